@@ -0,0 +1,176 @@
+package com.thunderscore.autooffhand.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton over a fixed set of substrings.
+ * A text is tested against every pattern in a single pass over its characters, so the cost of a name rule
+ * lookup does not grow with the number of "n:" entries.
+ * <p>
+ * Patterns and texts are compared as given; callers lowercase both for case-insensitive matching.
+ * Each pattern carries a rank (its rule's position in the config list), and {@link #bestRank} reports the best
+ * rank of the patterns found.
+ */
+public final class NameAutomaton {
+
+    // Per state: outgoing characters (sorted) and their target states
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    // Per state: longest proper suffix that is also a state
+    private final int[] fail;
+    // Per state: best (lowest) rank of the patterns ending here or at any state on its fail chain,
+    // Integer.MAX_VALUE if none does
+    private final int[] bestRank;
+
+    private NameAutomaton(char[][] edgeChars, int[][] edgeTargets, int[] fail, int[] bestRank) {
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.bestRank = bestRank;
+    }
+
+    /**
+     * Builds the automaton. Empty patterns are ignored.
+     *
+     * @param patternRanks The substrings to search for, each with its rank (lower is better).
+     * @return The automaton, or null if there is no non-empty pattern.
+     */
+    public static NameAutomaton build(Map<String, Integer> patternRanks) {
+        // Trie construction with sorted edge maps
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminal.add(Integer.MAX_VALUE);
+        boolean any = false;
+
+        for (Map.Entry<String, Integer> patternRank : patternRanks.entrySet()) {
+            String pattern = patternRank.getKey();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            any = true;
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    terminal.add(Integer.MAX_VALUE);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            terminal.set(state, Math.min(terminal.get(state), patternRank.getValue()));
+        }
+        if (!any) {
+            return null;
+        }
+
+        int stateCount = trie.size();
+        char[][] edgeChars = new char[stateCount][];
+        int[][] edgeTargets = new int[stateCount][];
+        int[] fail = new int[stateCount];
+        int[] bestRank = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            Map<Character, Integer> edges = trie.get(state);
+            edgeChars[state] = new char[edges.size()];
+            edgeTargets[state] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                edgeChars[state][i] = edge.getKey();
+                edgeTargets[state][i] = edge.getValue();
+                i++;
+            }
+            bestRank[state] = terminal.get(state);
+        }
+
+        // Breadth-first pass computes fail links; parents are always finished before their children
+        NameAutomaton automaton = new NameAutomaton(edgeChars, edgeTargets, fail, bestRank);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int target : edgeTargets[0]) {
+            fail[target] = 0;
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < edgeChars[state].length; i++) {
+                char c = edgeChars[state][i];
+                int child = edgeTargets[state][i];
+                int f = fail[state];
+                int next;
+                while ((next = automaton.edge(f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next >= 0 && next != child ? next : 0;
+                bestRank[child] = Math.min(bestRank[child], bestRank[fail[child]]);
+                queue.add(child);
+            }
+        }
+        return automaton;
+    }
+
+    /**
+     * @param text The text to scan.
+     * @return true if any pattern occurs in the text.
+     */
+    public boolean containsAny(CharSequence text) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = edge(state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = next >= 0 ? next : 0;
+            if (bestRank[state] != Integer.MAX_VALUE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scans the whole text, unlike {@link #containsAny}, unless a rank-0 pattern is found.
+     *
+     * @param text The text to scan.
+     * @return The best rank of the patterns occurring in the text, or Integer.MAX_VALUE if none does.
+     */
+    public int bestRank(CharSequence text) {
+        int best = Integer.MAX_VALUE;
+        int state = 0;
+        for (int i = 0; i < text.length() && best > 0; i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = edge(state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = next >= 0 ? next : 0;
+            best = Math.min(best, bestRank[state]);
+        }
+        return best;
+    }
+
+    // Target of the state's edge for c, or -1 if there is none
+    private int edge(int state, char c) {
+        char[] chars = edgeChars[state];
+        int low = 0;
+        int high = chars.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = chars[mid];
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[state][mid];
+            }
+        }
+        return -1;
+    }
+}
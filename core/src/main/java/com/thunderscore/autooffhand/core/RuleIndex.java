@@ -0,0 +1,617 @@
+package com.thunderscore.autooffhand.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Compiled, immutable form of a config entry list.
+ * Every entry is parsed exactly once when the index is built, and rules are keyed by item identity:
+ * registry-name entries become a set membership check, tag entries are flattened into that same set,
+ * namespace wildcards ("somemod:*") become one namespace lookup, NBT entries are grouped under their item
+ * so a lookup only compares against the candidates for its own item type, partial NBT entries ("p:...") become
+ * tag predicates grouped the same way, capability entries ("c:shield_block") are narrowed down to their candidate item
+ * types (see {@link RulePlatform.CapabilityCheck#candidates}) like any other rule and then answered once per item
+ * and fingerprint and memoised, and name substrings ("n:totem")
+ * share one {@link NameAutomaton} that tests a name against every pattern in a single pass.
+ * <p>
+ * Every rule also carries a priority rank, its entry's position in the list (0 is the highest priority), stored
+ * next to the rule so {@link #rank} answers with the same lookups as {@link #matches} instead of re-scanning the list.
+ * An entry may start with a routing prefix ("@9:minecraft:ender_pearl") naming the slot its items go to; the
+ * targets are kept in a table indexed by rank, so {@link #targetSlot} turns a rank into a slot with one array read.
+ *
+ * @param <I> The platform item type.
+ * @param <T> The platform tag type.
+ */
+public final class RuleIndex<I, T> {
+
+    // Prefix marking a display-name substring entry, e.g. "n:totem"
+    public static final String NAME_PREFIX = "n:";
+    // Prefix marking a partial NBT entry, e.g. p:*{Enchantments:[{id:"minecraft:mending"}]}
+    public static final String PARTIAL_PREFIX = "p:";
+    // Prefix marking a capability entry, e.g. "c:shield_block"
+    public static final String CAPABILITY_PREFIX = "c:";
+
+    // Rank of a stack no rule matches; worse than every real rank
+    public static final int NO_MATCH = Integer.MAX_VALUE;
+
+    // Prefix routing an entry's items to a slot, e.g. "@9:minecraft:ender_pearl" or "@offhand:#forge:shields"
+    public static final String ROUTE_PREFIX = "@";
+    public static final String OFFHAND_ROUTE = "offhand";
+    // Target of entries without a routing prefix; hotbar targets are the slot indexes 0-8 ("@1:" to "@9:")
+    public static final int OFFHAND = -1;
+    public static final int HOTBAR_SIZE = 9;
+    // Result of parseRoute for a malformed prefix
+    public static final int INVALID_ROUTE = -2;
+    // Start of a dimension/game mode scope prefix, e.g. "[dim:minecraft:the_nether]"; scopes go before the route
+    public static final String SCOPE_START = "[";
+
+    // Bound on memoised capability answers per index
+    private static final int MAX_CAPABILITY_MEMO = 4096;
+
+    private final RulePlatform<I, T> platform;
+    // Items matched regardless of NBT (plain registry-name entries and tag members), with their rank
+    private final Map<I, Integer> anyVariantItems;
+    // Namespaces matched by "modid:*" entries, checked once per lookup instead of expanding to every item
+    private final Map<String, Integer> namespaces;
+    // NBT entries grouped by their item, each list in rank order
+    private final Map<I, List<NbtRule<T>>> nbtRulesByItem;
+    // Partial NBT predicates grouped by their item, and those that apply to every item ("p:*{...}"), in rank order
+    private final Map<I, List<Ranked<Predicate<T>>>> partialRulesByItem;
+    private final List<Ranked<Predicate<T>>> partialRulesAnyItem;
+    // Capability checks in rank order, the item types they may pass for (the only ones they are checked for, see
+    // CapabilityCheck#candidates), and their memoised best rank per (item, fingerprint)
+    private final List<Ranked<BiPredicate<I, T>>> capabilityRules;
+    private final Set<I> capabilityItems;
+    private final Map<MemoKey<I>, Integer> capabilityMemo;
+    // Lowercased "n:" substrings, or null if there are none, and the best rank among them
+    private final NameAutomaton names;
+    private final int bestNameRank;
+    // Target slot per rank (entry position), or null if every entry goes to the offhand
+    private final int[] targets;
+    // Number of entries that compiled into a rule (invalid lines are dropped)
+    private final int ruleCount;
+    // Hash of the source entry list, shared by every index compiled from the same content
+    private final int contentHash;
+    // Optional deny layer: a stack it matches is rejected even if an allow rule above matched; null if none
+    private final RuleIndex<I, T> deny;
+
+    private RuleIndex(RulePlatform<I, T> platform, Map<I, Integer> anyVariantItems, Map<String, Integer> namespaces, Map<I, List<NbtRule<T>>> nbtRulesByItem,
+                      Map<I, List<Ranked<Predicate<T>>>> partialRulesByItem, List<Ranked<Predicate<T>>> partialRulesAnyItem,
+                      List<Ranked<BiPredicate<I, T>>> capabilityRules, Set<I> capabilityItems, NameAutomaton names, int bestNameRank,
+                      int[] targets, int ruleCount, int contentHash) {
+        this.platform = platform;
+        this.anyVariantItems = anyVariantItems;
+        this.namespaces = namespaces;
+        this.nbtRulesByItem = nbtRulesByItem;
+        this.partialRulesByItem = partialRulesByItem;
+        this.partialRulesAnyItem = partialRulesAnyItem;
+        this.capabilityRules = capabilityRules;
+        this.capabilityItems = capabilityItems;
+        this.capabilityMemo = capabilityRules.isEmpty() ? Collections.emptyMap() : new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemoKey<I>, Integer> eldest) {
+                return size() > MAX_CAPABILITY_MEMO;
+            }
+        };
+        this.names = names;
+        this.bestNameRank = bestNameRank;
+        this.targets = targets;
+        this.ruleCount = ruleCount;
+        this.contentHash = contentHash;
+        this.deny = null;
+    }
+
+    // Same rules as allow, with a deny layer attached
+    private RuleIndex(RuleIndex<I, T> allow, RuleIndex<I, T> deny) {
+        this.platform = allow.platform;
+        this.anyVariantItems = allow.anyVariantItems;
+        this.namespaces = allow.namespaces;
+        this.nbtRulesByItem = allow.nbtRulesByItem;
+        this.partialRulesByItem = allow.partialRulesByItem;
+        this.partialRulesAnyItem = allow.partialRulesAnyItem;
+        this.capabilityRules = allow.capabilityRules;
+        this.capabilityItems = allow.capabilityItems;
+        this.capabilityMemo = allow.capabilityMemo;
+        this.names = allow.names;
+        this.bestNameRank = allow.bestNameRank;
+        this.targets = allow.targets;
+        this.ruleCount = allow.ruleCount;
+        this.contentHash = 31 * allow.contentHash + deny.contentHash;
+        this.deny = deny;
+    }
+
+    /**
+     * @return An index without rules, which matches nothing.
+     */
+    public static <I, T> RuleIndex<I, T> empty(RulePlatform<I, T> platform) {
+        return new RuleIndex<>(platform, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(),
+                Collections.emptyMap(), Collections.emptyList(), Collections.emptyList(), Collections.emptySet(), null, NO_MATCH, null, 0, 0);
+    }
+
+    /**
+     * Parses every entry of a config list and builds the per-item index.
+     * Invalid entries are skipped; reporting them is up to the platform.
+     * Each rule's rank is its entry's position in the list; an item matched by several entries keeps the best.
+     *
+     * @param platform The runtime adapter used to resolve items and parse NBT.
+     * @param entries The raw config entries (registry names, #tags, modid:* wildcards, n:names, p:partial NBT, c:capabilities or NBT strings).
+     * @return The compiled index; empty if nothing could be compiled.
+     */
+    public static <I, T> RuleIndex<I, T> compile(RulePlatform<I, T> platform, List<String> entries) {
+        Map<I, Integer> anyVariantItems = new IdentityHashMap<>();
+        Map<String, Integer> namespaces = new HashMap<>();
+        Map<String, Integer> nameSubstrings = new HashMap<>();
+        Map<I, List<Ranked<Predicate<T>>>> partialRulesByItem = new IdentityHashMap<>();
+        List<Ranked<Predicate<T>>> partialRulesAnyItem = new ArrayList<>();
+        List<Ranked<BiPredicate<I, T>>> capabilityRules = new ArrayList<>();
+        Set<I> capabilityItems = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<I, List<NbtRule<T>>> nbtRulesByItem = new IdentityHashMap<>();
+        int bestNameRank = NO_MATCH;
+        int[] targets = null;
+        int ruleCount = 0;
+
+        // Entries are visited in list order, so putIfAbsent keeps the best rank and per-item lists stay in rank order
+        for (int rank = 0; rank < entries.size(); rank++) {
+            String entry = entries.get(rank);
+            if (entry == null || entry.trim().isEmpty()) {
+                continue;
+            }
+            if (entry.startsWith(ROUTE_PREFIX)) {
+                int target = parseRoute(entry);
+                if (target == INVALID_ROUTE) {
+                    continue;
+                }
+                if (target != OFFHAND) {
+                    if (targets == null) {
+                        targets = new int[entries.size()];
+                        Arrays.fill(targets, OFFHAND);
+                    }
+                    targets[rank] = target;
+                }
+                entry = stripRoute(entry);
+            }
+            if (entry.startsWith(NAME_PREFIX)) {
+                String substring = entry.substring(NAME_PREFIX.length()).trim().toLowerCase(Locale.ROOT);
+                if (!substring.isEmpty()) {
+                    nameSubstrings.putIfAbsent(substring, rank);
+                    bestNameRank = Math.min(bestNameRank, rank);
+                    ruleCount++;
+                }
+            } else if (entry.startsWith(CAPABILITY_PREFIX)) {
+                RulePlatform.CapabilityCheck<I, T> capability = platform.parseCapability(entry);
+                if (capability != null) {
+                    capabilityRules.add(new Ranked<>(capability, rank));
+                    capabilityItems.addAll(capability.candidates());
+                    ruleCount++;
+                }
+            } else if (entry.startsWith(PARTIAL_PREFIX)) {
+                RulePlatform.ParsedPredicate<I, T> parsed = platform.parsePartial(entry);
+                if (parsed != null) {
+                    Ranked<Predicate<T>> rule = new Ranked<>(parsed.predicate(), rank);
+                    if (parsed.item() == null) {
+                        partialRulesAnyItem.add(rule);
+                    } else {
+                        partialRulesByItem.computeIfAbsent(parsed.item(), item -> new ArrayList<>(1)).add(rule);
+                    }
+                    ruleCount++;
+                }
+            } else if (entry.startsWith("{")) {
+                RulePlatform.ParsedStack<I, T> parsed = platform.parseStack(entry);
+                if (parsed != null) {
+                    T tag = parsed.tag();
+                    nbtRulesByItem.computeIfAbsent(parsed.item(), item -> new ArrayList<>(1)).add(new NbtRule<>(tag, platform.fingerprint(tag), rank));
+                    ruleCount++;
+                }
+            } else if (entry.startsWith("#")) {
+                Iterable<I> members = platform.tagMembers(entry);
+                if (members != null) {
+                    // Tag membership is flattened here, so a tag costs the same set lookup as a single item id
+                    for (I item : members) {
+                        anyVariantItems.putIfAbsent(item, rank);
+                    }
+                    ruleCount++;
+                }
+            } else if (entry.endsWith(":*")) {
+                String namespace = platform.parseNamespace(entry);
+                if (namespace != null) {
+                    namespaces.putIfAbsent(namespace, rank);
+                    ruleCount++;
+                }
+            } else {
+                I item = platform.item(entry);
+                if (item != null) {
+                    anyVariantItems.putIfAbsent(item, rank);
+                    ruleCount++;
+                }
+            }
+        }
+
+        if (ruleCount == 0) {
+            return empty(platform);
+        }
+
+        // A plain registry-name entry already matches every variant, so NBT rules for the same item are redundant
+        // unless they rank higher
+        if (!namespaces.isEmpty()) {
+            // Same for anything a namespace wildcard already covers
+            anyVariantItems.entrySet().removeIf(e -> rankOf(namespaces, platform.namespaceOf(e.getKey())) <= e.getValue());
+        }
+        nbtRulesByItem.entrySet().removeIf(e -> {
+            int covered = Math.min(rankOf(anyVariantItems, e.getKey()), rankOf(namespaces, platform.namespaceOf(e.getKey())));
+            e.getValue().removeIf(rule -> rule.rank > covered);
+            return e.getValue().isEmpty();
+        });
+        partialRulesByItem.entrySet().removeIf(e -> {
+            int covered = Math.min(rankOf(anyVariantItems, e.getKey()), rankOf(namespaces, platform.namespaceOf(e.getKey())));
+            e.getValue().removeIf(rule -> rule.rank > covered);
+            return e.getValue().isEmpty();
+        });
+
+        NameAutomaton names = NameAutomaton.build(nameSubstrings);
+        return new RuleIndex<>(platform, anyVariantItems, namespaces, nbtRulesByItem, partialRulesByItem,
+                partialRulesAnyItem.isEmpty() ? Collections.emptyList() : partialRulesAnyItem,
+                capabilityRules.isEmpty() ? Collections.emptyList() : capabilityRules,
+                capabilityItems.isEmpty() ? Collections.emptySet() : capabilityItems,
+                names, bestNameRank, targets, ruleCount, entries.hashCode());
+    }
+
+
+    /**
+     * Parses the routing prefix of an entry: "@1:" to "@9:" for the hotbar slots, "@offhand:" for the offhand.
+     * An entry has at most one route, and scope prefixes must come before it ("[dim:...]@9:..."), so a route
+     * followed by another route or by a scope is malformed.
+     *
+     * @param entry The raw config entry.
+     * @return The hotbar slot index (0-8), {@link #OFFHAND} if the entry has no prefix or routes to the offhand,
+     *         or {@link #INVALID_ROUTE} if the prefix is malformed.
+     */
+    public static int parseRoute(String entry) {
+        if (!entry.startsWith(ROUTE_PREFIX)) {
+            return OFFHAND;
+        }
+        int end = entry.indexOf(':');
+        if (end < 0) {
+            return INVALID_ROUTE;
+        }
+        String slot = entry.substring(ROUTE_PREFIX.length(), end).trim();
+        if (slot.equalsIgnoreCase(OFFHAND_ROUTE)) {
+            return isRouteTarget(entry.substring(end + 1)) ? OFFHAND : INVALID_ROUTE;
+        }
+        if (slot.length() == 1 && slot.charAt(0) >= '1' && slot.charAt(0) <= '0' + HOTBAR_SIZE) {
+            return isRouteTarget(entry.substring(end + 1)) ? slot.charAt(0) - '1' : INVALID_ROUTE;
+        }
+        return INVALID_ROUTE;
+    }
+
+    // Rejects the rule after a route if it starts with another prefix
+    private static boolean isRouteTarget(String rule) {
+        return !rule.startsWith(ROUTE_PREFIX) && !rule.startsWith(SCOPE_START);
+    }
+
+    /**
+     * @return The entry without its routing prefix, if it has one.
+     */
+    public static String stripRoute(String entry) {
+        return entry.startsWith(ROUTE_PREFIX) ? entry.substring(entry.indexOf(':') + 1) : entry;
+    }
+
+    private static <K> int rankOf(Map<K, Integer> ranks, K key) {
+        Integer rank = ranks.get(key);
+        return rank != null ? rank : NO_MATCH;
+    }
+
+    /**
+     * Builds one merged index from layered lists: the allow layers are concatenated in order (e.g. a player's
+     * own list, then the global list) and the deny layer is attached, so evaluating every layer is a single lookup.
+     *
+     * @param platform The runtime adapter used to resolve items and parse NBT.
+     * @param allowEntries The concatenated allow layers.
+     * @param denyEntries Entries that veto a match; may be empty.
+     * @return The merged index; empty if no allow rule could be compiled.
+     */
+    public static <I, T> RuleIndex<I, T> compileLayered(RulePlatform<I, T> platform, List<String> allowEntries, List<String> denyEntries) {
+        RuleIndex<I, T> allow = compile(platform, allowEntries);
+        if (allow.isEmpty() || denyEntries.isEmpty()) {
+            return allow;
+        }
+        RuleIndex<I, T> deny = compile(platform, denyEntries);
+        return deny.isEmpty() ? allow : new RuleIndex<>(allow, deny);
+    }
+
+    /**
+     * Checks whether a stack with the given item and tag is matched by any rule in this index
+     * and not vetoed by its deny layer.
+     *
+     * @param item The item type of the stack.
+     * @param tag The stack's tag, may be null.
+     * @return true if a registry-name, tag, namespace, NBT, partial NBT, capability or name rule matches
+     *         and no deny rule does.
+     */
+    public boolean matches(I item, T tag) {
+        // Deny is only consulted on a hit, so misses cost the same as without a deny layer
+        return allowRank(item, tag, true) != NO_MATCH && (deny == null || !deny.matches(item, tag));
+    }
+
+    /**
+     * Gets the priority of a stack: the rank of the best rule that matches it, unless the deny layer vetoes it.
+     * Rule ranks are stored with the rules, so this costs the same lookups as {@link #matches} plus, at worst,
+     * checking the remaining rule kinds for a better rank.
+     *
+     * @param item The item type of the stack.
+     * @param tag The stack's tag, may be null.
+     * @return The best matching rank (0 is the highest priority), or {@link #NO_MATCH}.
+     */
+    public int rank(I item, T tag) {
+        int rank = allowRank(item, tag, false);
+        return rank == NO_MATCH || (deny != null && deny.matches(item, tag)) ? NO_MATCH : rank;
+    }
+
+    // Best rank among the allow rules; with firstHit, returns as soon as any rule matches (the rank is then not
+    // necessarily the best one)
+    private int allowRank(I item, T tag, boolean firstHit) {
+        int best = anyVariantRank(item);
+        if (firstHit && best != NO_MATCH) {
+            return best;
+        }
+        List<NbtRule<T>> candidates = nbtRulesByItem.get(item);
+        if (candidates != null) {
+            int fingerprint = platform.fingerprint(tag);
+            for (NbtRule<T> candidate : candidates) {
+                if (candidate.rank >= best) {
+                    break; // Candidates are in rank order, so none of the rest can do better
+                }
+                // Fingerprint mismatch rejects immediately; only a hash hit pays for the structural comparison
+                if (candidate.fingerprint == fingerprint && platform.tagsMatch(candidate.tag, tag)) {
+                    best = candidate.rank;
+                    break;
+                }
+            }
+        }
+        best = partialRank(partialRulesByItem.get(item), tag, best);
+        best = partialRank(partialRulesAnyItem, tag, best);
+        if (firstHit && best != NO_MATCH) {
+            return best;
+        }
+        boolean checkCapabilities = !capabilityRules.isEmpty() && capabilityRules.get(0).rank < best && capabilityItems.contains(item);
+        boolean checkNames = names != null && bestNameRank < best;
+        if (!checkCapabilities && !checkNames) {
+            return best;
+        }
+        int fingerprint = platform.fingerprint(tag);
+        if (checkCapabilities) {
+            best = Math.min(best, capabilityRank(item, tag, fingerprint));
+            if (firstHit && best != NO_MATCH) {
+                return best;
+            }
+            checkNames = names != null && bestNameRank < best;
+        }
+        // Name rules last: they are the only ones that need the display name
+        if (checkNames) {
+            String name = platform.lowercaseName(item, tag, fingerprint);
+            if (firstHit) {
+                return names.containsAny(name) ? bestNameRank : NO_MATCH;
+            }
+            best = Math.min(best, names.bestRank(name));
+        }
+        return best;
+    }
+
+    /**
+     * Checks whether the decision for this item and fingerprint is fully determined by the pair,
+     * i.e. no NBT rule of the item shares the fingerprint and needed a structural comparison.
+     * Partial NBT rules read arbitrary paths, so an item they apply to is never decided by the fingerprint.
+     * Capability and name rules do not affect this: their memos are keyed by the same pair.
+     * Only such decisions are safe to cache under the fingerprint.
+     *
+     * @param item The item type of the stack.
+     * @param fingerprint The stack's {@link RulePlatform#fingerprint}.
+     * @return true if a decision for the pair can be cached.
+     */
+    public boolean isDecidedByFingerprint(I item, int fingerprint) {
+        return isAllowDecidedByFingerprint(item, fingerprint) && (deny == null || deny.isDecidedByFingerprint(item, fingerprint));
+    }
+
+    /**
+     * Checks whether the decision for an item can depend on the stack's tag, i.e. some NBT, partial NBT,
+     * capability or name rule (in either layer) may apply to it.
+     * When it can't, {@link #rank} is a single lookup by item and needs neither a fingerprint nor a decision cache.
+     *
+     * @param item The item type of the stack.
+     * @return true if the stack's tag may change the decision.
+     */
+    public boolean dependsOnTag(I item) {
+        return isAllowTagDependent(item) || (deny != null && deny.isAllowTagDependent(item));
+    }
+
+    private boolean isAllowTagDependent(I item) {
+        return names != null || !partialRulesAnyItem.isEmpty() || capabilityItems.contains(item)
+                || nbtRulesByItem.containsKey(item) || partialRulesByItem.containsKey(item);
+    }
+
+    private boolean isAllowDecidedByFingerprint(I item, int fingerprint) {
+        // Item-specific partial and NBT rules left next to a registry-name rule outrank it, so they still count
+        if (partialRulesByItem.containsKey(item)
+                || (!partialRulesAnyItem.isEmpty() && partialRulesAnyItem.get(0).rank < anyVariantRank(item))) {
+            return false;
+        }
+        List<NbtRule<T>> candidates = nbtRulesByItem.get(item);
+        if (candidates != null) {
+            for (NbtRule<T> candidate : candidates) {
+                if (candidate.fingerprint == fingerprint) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Best rank among the predicates that match and beat the current best; the list is in rank order
+    private static <T> int partialRank(List<Ranked<Predicate<T>>> predicates, T tag, int best) {
+        if (predicates != null) {
+            for (Ranked<Predicate<T>> predicate : predicates) {
+                if (predicate.rank >= best) {
+                    break;
+                }
+                if (predicate.rule.test(tag)) {
+                    return predicate.rank;
+                }
+            }
+        }
+        return best;
+    }
+
+    // Capability checks are answered once per (item, fingerprint), so other mods' item code runs only on a memo miss.
+    // The rules are in rank order, so the first that matches holds the best rank.
+    private int capabilityRank(I item, T tag, int fingerprint) {
+        MemoKey<I> key = new MemoKey<>(item, fingerprint);
+        synchronized (capabilityMemo) {
+            Integer memoised = capabilityMemo.get(key);
+            if (memoised != null) {
+                return memoised;
+            }
+        }
+        int rank = NO_MATCH;
+        for (Ranked<BiPredicate<I, T>> capability : capabilityRules) {
+            if (capability.rule.test(item, tag)) {
+                rank = capability.rank;
+                break;
+            }
+        }
+        synchronized (capabilityMemo) {
+            capabilityMemo.put(key, rank);
+        }
+        return rank;
+    }
+
+    // Registry-name, tag and namespace rules: match regardless of the tag
+    private int anyVariantRank(I item) {
+        Integer rank = anyVariantItems.get(item);
+        if (namespaces.isEmpty()) {
+            return rank != null ? rank : NO_MATCH;
+        }
+        // An item entry can outrank its mod's wildcard, so both are consulted
+        int namespaceRank = rankOf(namespaces, platform.namespaceOf(item));
+        return rank != null ? Math.min(rank, namespaceRank) : namespaceRank;
+    }
+
+    /**
+     * Sets the numeric id of every item this index can match in the given bitset.
+     * Namespace wildcards are expanded to the items currently registered under them.
+     * The deny layer is ignored, so the result is a superset.
+     *
+     * @param itemIds The bitset to add to, indexed by {@link RulePlatform#numericId}.
+     */
+    public void addItemIds(BitSet itemIds) {
+        for (I item : anyVariantItems.keySet()) {
+            itemIds.set(platform.numericId(item));
+        }
+        for (String namespace : namespaces.keySet()) {
+            for (I item : platform.itemsInNamespace(namespace)) {
+                itemIds.set(platform.numericId(item));
+            }
+        }
+        for (I item : nbtRulesByItem.keySet()) {
+            itemIds.set(platform.numericId(item));
+        }
+        for (I item : partialRulesByItem.keySet()) {
+            itemIds.set(platform.numericId(item));
+        }
+        for (I item : capabilityItems) {
+            itemIds.set(platform.numericId(item));
+        }
+    }
+
+    /**
+     * @return true if a name or "p:*" rule can match stacks of any item type,
+     *         so an item id bitset cannot rule anything out.
+     */
+    public boolean matchesAnyItemType() {
+        return names != null || !partialRulesAnyItem.isEmpty();
+    }
+
+    /**
+     * @param rank A rank returned by {@link #rank}.
+     * @return The slot the matching entry routes to: a hotbar slot index (0-8) or {@link #OFFHAND}.
+     */
+    public int targetSlot(int rank) {
+        return targets == null || rank == NO_MATCH ? OFFHAND : targets[rank];
+    }
+
+    /**
+     * @return true if some entry routes to a hotbar slot rather than the offhand.
+     */
+    public boolean hasHotbarRoutes() {
+        return targets != null;
+    }
+
+    public int contentHash() {
+        return contentHash;
+    }
+
+    public boolean isEmpty() {
+        return ruleCount == 0;
+    }
+
+    public int size() {
+        return ruleCount;
+    }
+
+    // Item identity plus fingerprint, the key of the capability memo
+    private static final class MemoKey<I> {
+        private final I item;
+        private final int fingerprint;
+
+        MemoKey(I item, int fingerprint) {
+            this.item = item;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MemoKey)) return false;
+            MemoKey<?> other = (MemoKey<?>) o;
+            return item == other.item && fingerprint == other.fingerprint;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(item) + fingerprint;
+        }
+    }
+
+    // An NBT entry with its fingerprint precomputed at compile time
+    private static final class NbtRule<T> {
+        private final T tag;
+        private final int fingerprint;
+        private final int rank;
+
+        NbtRule(T tag, int fingerprint, int rank) {
+            this.tag = tag;
+            this.fingerprint = fingerprint;
+            this.rank = rank;
+        }
+    }
+
+    // A partial NBT or capability rule with its rank
+    private static final class Ranked<R> {
+        private final R rule;
+        private final int rank;
+
+        Ranked(R rule, int rank) {
+            this.rule = rule;
+            this.rank = rank;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.thunderscore.autooffhand.core;
+
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Adapter between the matching core and the game runtime.
+ * The core never touches registries or NBT classes directly; it only sees opaque item and tag values
+ * through this interface, so it can be compiled, tested and benchmarked on a plain JVM.
+ * <p>
+ * Items are compared by identity, so implementations must hand out one canonical instance per item type
+ * (registry objects already are).
+ *
+ * @param <I> The item type, e.g. a registry Item.
+ * @param <T> The tag type attached to a stack, e.g. a CompoundTag. May be null for stacks without a tag.
+ */
+public interface RulePlatform<I, T> {
+
+    /**
+     * Resolves a registry-name entry such as "minecraft:torch".
+     *
+     * @param id The raw config entry.
+     * @return The registered item, or null if the id is invalid or unknown.
+     */
+    I item(String id);
+
+    /**
+     * Resolves a tag entry such as "#forge:shields" to the items currently in the tag.
+     * Membership is read once at compile time, so indexes must be recompiled when tags reload.
+     *
+     * @param entry The raw config entry, starting with '#'.
+     * @return The tag's items (empty if the tag is unknown or not loaded yet), or null if the entry is invalid.
+     */
+    Iterable<I> tagMembers(String entry);
+
+    /**
+     * Validates a namespace wildcard entry such as "somemod:*".
+     *
+     * @param entry The raw config entry, ending with ":*".
+     * @return The namespace, or null if the entry is invalid.
+     */
+    String parseNamespace(String entry);
+
+    /**
+     * @return The namespace of the item's registry name. Called on the match path, so it must not allocate.
+     */
+    String namespaceOf(I item);
+
+    /**
+     * @return Every registered item in the namespace. Only used off the match path (e.g. to build bitsets).
+     */
+    Iterable<I> itemsInNamespace(String namespace);
+
+    /**
+     * Lowercased (Locale.ROOT) display name of a stack with the given item and tag, for "n:" name rules.
+     * Called on the match path, so implementations should memoise it.
+     *
+     * @param item The item type of the stack.
+     * @param tag The stack's tag, may be null.
+     * @param fingerprint The tag's {@link #fingerprint}, usable as a memo key.
+     * @return The lowercased display name.
+     */
+    String lowercaseName(I item, T tag, int fingerprint);
+
+    /**
+     * Parses an NBT entry ("{id:...,Count:...,tag:{...}}") into its item and tag.
+     * The tag is returned with the ignored keys (Damage) already removed.
+     *
+     * @param snbt The raw config entry, starting with '{'.
+     * @return The parsed stack, or null if the entry is invalid.
+     */
+    ParsedStack<I, T> parseStack(String snbt);
+
+    /**
+     * Parses a partial NBT entry such as {@code p:minecraft:shield{Enchantments:[{id:"minecraft:mending"}]}}
+     * into a predicate over the stack's tag. The predicate requires only the listed paths and values
+     * to be present and must read the tag without copying it.
+     *
+     * @param entry The raw config entry, starting with "p:".
+     * @return The parsed rule (item null for "p:*{...}"), or null if the entry is invalid.
+     */
+    ParsedPredicate<I, T> parsePartial(String entry);
+
+    /**
+     * Parses a capability entry such as "c:shield_block" or "c:totem" into a check on what a stack can do.
+     * The check may call into other mods' item classes; the index memoises its result per item and fingerprint.
+     *
+     * @param entry The raw config entry, starting with "c:".
+     * @return The check, or null if the entry is invalid.
+     */
+    CapabilityCheck<I, T> parseCapability(String entry);
+
+    /**
+     * Stable hash of a tag with the ignored keys excluded.
+     * Tags that match under {@link #tagsMatch} must have equal fingerprints.
+     *
+     * @param tag The tag, may be null.
+     * @return The fingerprint; 0 for a null tag or one with no relevant entries.
+     */
+    int fingerprint(T tag);
+
+    /**
+     * Structurally compares a rule tag with a stack tag, ignoring the same keys as {@link #fingerprint}.
+     *
+     * @param ruleTag The tag of the config entry, may be null.
+     * @param stackTag The tag of the stack being checked, may be null.
+     * @return true if both tags hold the same relevant entries.
+     */
+    boolean tagsMatch(T ruleTag, T stackTag);
+
+    /**
+     * @return A small non-negative numeric id for the item, used to build bitsets over item types.
+     */
+    int numericId(I item);
+
+    /**
+     * A parsed capability entry: tests a stack's item and tag, and narrows down the item types worth testing.
+     */
+    interface CapabilityCheck<I, T> extends BiPredicate<I, T> {
+
+        /**
+         * The item types a stack of which may pass the check: those whose plain stack passes it, plus those whose
+         * answer may depend on the stack's tag (e.g. modular tools). Every other type is answered "no" without
+         * running the check. Read when an index is compiled; implementations should compute it once and share it.
+         *
+         * @return The candidate item types.
+         */
+        Set<I> candidates();
+    }
+
+    /**
+     * The item (null for any item) and compiled tag predicate of a partial NBT entry.
+     */
+    final class ParsedPredicate<I, T> {
+        private final I item;
+        private final Predicate<T> predicate;
+
+        public ParsedPredicate(I item, Predicate<T> predicate) {
+            this.item = item;
+            this.predicate = predicate;
+        }
+
+        public I item() {
+            return item;
+        }
+
+        public Predicate<T> predicate() {
+            return predicate;
+        }
+    }
+
+    /**
+     * The item and tag of a parsed NBT entry.
+     */
+    final class ParsedStack<I, T> {
+        private final I item;
+        private final T tag;
+
+        public ParsedStack(I item, T tag) {
+            this.item = item;
+            this.tag = tag;
+        }
+
+        public I item() {
+            return item;
+        }
+
+        public T tag() {
+            return tag;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.thunderscore.autooffhand.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory {@link RulePlatform} for the core tests: items are registered by hand and tags are flat string maps.
+ * <p>
+ * Entry syntax understood here (the Forge platform uses SNBT instead):
+ * <ul>
+ *     <li>NBT entries: {@code {id=test:sword,ench=sharpness}}</li>
+ *     <li>partial NBT entries: {@code p:test:shield{color=red}} or {@code p:*{ench=mending}}</li>
+ *     <li>capability entries: {@code c:<capability>}, matching items registered with that capability, or modular
+ *     items whose {@code actions} tag lists it</li>
+ * </ul>
+ * The "Damage" key is ignored by fingerprints and comparisons, like on the Forge side.
+ */
+final class FakePlatform implements RulePlatform<FakePlatform.Item, Map<String, String>> {
+
+    static final String IGNORED_KEY = "Damage";
+
+    private final Map<String, Item> items = new LinkedHashMap<>();
+    private final Map<String, List<Item>> tags = new HashMap<>();
+    // Number of fingerprint computations, to check which lookups need one
+    int fingerprintCalls = 0;
+
+    Item register(String id, String displayName, String... capabilities) {
+        Item item = new Item(id, displayName, items.size(), new HashSet<>(Arrays.asList(capabilities)), false);
+        items.put(id, item);
+        return item;
+    }
+
+    /**
+     * Registers an item whose capabilities come from its tag, like a modular tool: a plain stack has none,
+     * and a stack tagged {@code actions=a|b} has capabilities a and b.
+     */
+    Item registerModular(String id, String displayName) {
+        Item item = new Item(id, displayName, items.size(), Collections.emptySet(), true);
+        items.put(id, item);
+        return item;
+    }
+
+    void tag(String name, Item... members) {
+        tags.put(name, Arrays.asList(members));
+    }
+
+    /**
+     * @return A tag built from alternating keys and values.
+     */
+    static Map<String, String> nbt(String... keyValues) {
+        Map<String, String> tag = new HashMap<>();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            tag.put(keyValues[i], keyValues[i + 1]);
+        }
+        return tag;
+    }
+
+    @Override
+    public Item item(String id) {
+        return items.get(id.trim());
+    }
+
+    @Override
+    public Iterable<Item> tagMembers(String entry) {
+        String name = entry.substring(1);
+        if (name.indexOf(':') < 0) {
+            return null;
+        }
+        return tags.getOrDefault(name, Collections.emptyList());
+    }
+
+    @Override
+    public String parseNamespace(String entry) {
+        String namespace = entry.substring(0, entry.length() - 2);
+        return namespace.isEmpty() || namespace.indexOf(':') >= 0 ? null : namespace;
+    }
+
+    @Override
+    public String namespaceOf(Item item) {
+        return item.namespace;
+    }
+
+    @Override
+    public Iterable<Item> itemsInNamespace(String namespace) {
+        List<Item> members = new ArrayList<>();
+        for (Item item : items.values()) {
+            if (item.namespace.equals(namespace)) {
+                members.add(item);
+            }
+        }
+        return members;
+    }
+
+    @Override
+    public String lowercaseName(Item item, Map<String, String> tag, int fingerprint) {
+        String name = tag != null && tag.containsKey("name") ? tag.get("name") : item.displayName;
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public ParsedStack<Item, Map<String, String>> parseStack(String snbt) {
+        Map<String, String> tag = parseBody(snbt);
+        if (tag == null) {
+            return null;
+        }
+        Item item = items.get(tag.remove("id"));
+        if (item == null) {
+            return null;
+        }
+        tag.remove(IGNORED_KEY);
+        return new ParsedStack<>(item, tag.isEmpty() ? null : tag);
+    }
+
+    @Override
+    public ParsedPredicate<Item, Map<String, String>> parsePartial(String entry) {
+        String body = entry.substring(RuleIndex.PARTIAL_PREFIX.length());
+        int brace = body.indexOf('{');
+        if (brace < 0) {
+            return null;
+        }
+        String id = body.substring(0, brace);
+        Item item = null;
+        if (!id.equals("*")) {
+            item = items.get(id);
+            if (item == null) {
+                return null;
+            }
+        }
+        Map<String, String> template = parseBody(body.substring(brace));
+        if (template == null) {
+            return null;
+        }
+        return new ParsedPredicate<>(item, tag -> tag != null && tag.entrySet().containsAll(template.entrySet()));
+    }
+
+    @Override
+    public CapabilityCheck<Item, Map<String, String>> parseCapability(String entry) {
+        String capability = entry.substring(RuleIndex.CAPABILITY_PREFIX.length()).trim();
+        if (capability.isEmpty()) {
+            return null;
+        }
+        Set<Item> candidates = new HashSet<>();
+        for (Item item : items.values()) {
+            if (item.modular || item.capabilities.contains(capability)) {
+                candidates.add(item);
+            }
+        }
+        return new CapabilityCheck<Item, Map<String, String>>() {
+            @Override
+            public boolean test(Item item, Map<String, String> tag) {
+                if (item.modular) {
+                    return tag != null && tag.containsKey("actions") && Arrays.asList(tag.get("actions").split("\\|")).contains(capability);
+                }
+                return item.capabilities.contains(capability);
+            }
+
+            @Override
+            public Set<Item> candidates() {
+                return candidates;
+            }
+        };
+    }
+
+    @Override
+    public int fingerprint(Map<String, String> tag) {
+        fingerprintCalls++;
+        return tag == null ? 0 : relevant(tag).hashCode();
+    }
+
+    @Override
+    public boolean tagsMatch(Map<String, String> ruleTag, Map<String, String> stackTag) {
+        return relevant(ruleTag).equals(relevant(stackTag));
+    }
+
+    @Override
+    public int numericId(Item item) {
+        return item.numericId;
+    }
+
+    private static Map<String, String> relevant(Map<String, String> tag) {
+        if (tag == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> copy = new HashMap<>(tag);
+        copy.remove(IGNORED_KEY);
+        return copy;
+    }
+
+    // "{k=v,k2=v2}" into a map, or null if malformed
+    private static Map<String, String> parseBody(String body) {
+        if (!body.startsWith("{") || !body.endsWith("}")) {
+            return null;
+        }
+        Map<String, String> tag = new HashMap<>();
+        String inner = body.substring(1, body.length() - 1);
+        if (inner.isEmpty()) {
+            return tag;
+        }
+        for (String pair : inner.split(",")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) {
+                return null;
+            }
+            tag.put(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+        }
+        return tag;
+    }
+
+    static final class Item {
+        final String id;
+        final String namespace;
+        final String displayName;
+        final int numericId;
+        final Set<String> capabilities;
+        // Capabilities come from the tag instead, see registerModular
+        final boolean modular;
+
+        Item(String id, String displayName, int numericId, Set<String> capabilities, boolean modular) {
+            this.id = id;
+            this.namespace = id.substring(0, id.indexOf(':'));
+            this.displayName = displayName;
+            this.numericId = numericId;
+            this.capabilities = capabilities;
+            this.modular = modular;
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+}
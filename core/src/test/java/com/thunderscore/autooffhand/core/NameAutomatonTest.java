@@ -0,0 +1,55 @@
+package com.thunderscore.autooffhand.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class NameAutomatonTest {
+
+    private static NameAutomaton build(Object... patternRanks) {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i + 1 < patternRanks.length; i += 2) {
+            map.put((String) patternRanks[i], (Integer) patternRanks[i + 1]);
+        }
+        return NameAutomaton.build(map);
+    }
+
+    @Test
+    void noPatternsBuildsNothing() {
+        assertNull(build());
+        assertNull(build("", 0));
+    }
+
+    @Test
+    void findsPatternsAnywhereInTheText() {
+        NameAutomaton automaton = build("totem", 0, "shield", 1);
+        assertTrue(automaton.containsAny("totem of undying"));
+        assertTrue(automaton.containsAny("enchanted shield"));
+        assertFalse(automaton.containsAny("torch"));
+        assertFalse(automaton.containsAny(""));
+    }
+
+    @Test
+    void followsFailLinksForOverlappingPatterns() {
+        NameAutomaton automaton = build("he", 3, "she", 2, "his", 1, "hers", 0);
+        assertEquals(2, automaton.bestRank("ushe"));
+        assertEquals(0, automaton.bestRank("ushers"));
+        assertEquals(1, automaton.bestRank("ahishe"));
+        assertEquals(3, automaton.bestRank("the"));
+        assertTrue(automaton.containsAny("shh he"));
+    }
+
+    @Test
+    void reportsTheBestRankAmongAllOccurrences() {
+        NameAutomaton automaton = build("sword", 4, "diamond", 2, "mond", 1);
+        assertEquals(1, automaton.bestRank("diamond sword"));
+        assertEquals(4, automaton.bestRank("iron sword"));
+        assertEquals(Integer.MAX_VALUE, automaton.bestRank("torch"));
+    }
+}
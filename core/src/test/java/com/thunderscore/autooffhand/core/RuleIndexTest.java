@@ -0,0 +1,298 @@
+package com.thunderscore.autooffhand.core;
+
+import static com.thunderscore.autooffhand.core.FakePlatform.nbt;
+import static com.thunderscore.autooffhand.core.RuleIndex.NO_MATCH;
+import static com.thunderscore.autooffhand.core.RuleIndex.OFFHAND;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RuleIndexTest {
+
+    private FakePlatform platform;
+    private FakePlatform.Item torch;
+    private FakePlatform.Item shield;
+    private FakePlatform.Item totem;
+    private FakePlatform.Item sword;
+    private FakePlatform.Item pickaxe;
+    private FakePlatform.Item gem;
+    private FakePlatform.Item otherThing;
+
+    @BeforeEach
+    void setUp() {
+        platform = new FakePlatform();
+        torch = platform.register("test:torch", "Torch");
+        shield = platform.register("test:shield", "Shield", "shield_block");
+        totem = platform.register("test:totem", "Totem of Undying");
+        sword = platform.register("test:sword", "Diamond Sword");
+        pickaxe = platform.register("test:pickaxe", "Pickaxe", "pickaxe_dig");
+        gem = platform.register("other:gem", "Gem");
+        otherThing = platform.register("other:thing", "Thing");
+        platform.tag("test:tools", sword, pickaxe);
+    }
+
+    private RuleIndex<FakePlatform.Item, Map<String, String>> compile(String... entries) {
+        return RuleIndex.compile(platform, Arrays.asList(entries));
+    }
+
+    // --- Compile and match ---
+
+    @Test
+    void emptyListMatchesNothing() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile();
+        assertTrue(index.isEmpty());
+        assertEquals(NO_MATCH, index.rank(torch, null));
+        assertFalse(index.matches(torch, null));
+    }
+
+    @Test
+    void invalidEntriesAreSkippedButKeepTheirPosition() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("test:unknown", " ", "{id=test:unknown}", "test:torch");
+        assertEquals(1, index.size());
+        assertEquals(3, index.rank(torch, null));
+    }
+
+    @Test
+    void plainIdMatchesEveryVariant() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("test:torch");
+        assertEquals(0, index.rank(torch, null));
+        assertEquals(0, index.rank(torch, nbt("display", "Lit")));
+        assertTrue(index.matches(torch, null));
+        assertEquals(NO_MATCH, index.rank(shield, null));
+    }
+
+    @Test
+    void tagEntryMatchesItsMembers() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("#test:tools", "#test:unknown");
+        assertEquals(0, index.rank(sword, null));
+        assertEquals(0, index.rank(pickaxe, null));
+        assertEquals(NO_MATCH, index.rank(torch, null));
+        assertEquals(2, index.size()); // An unknown tag is valid, it just has no members yet
+    }
+
+    @Test
+    void namespaceWildcardMatchesTheWholeMod() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("other:*");
+        assertEquals(0, index.rank(gem, null));
+        assertEquals(0, index.rank(otherThing, null));
+        assertEquals(NO_MATCH, index.rank(torch, null));
+    }
+
+    @Test
+    void nbtEntryMatchesOnlyItsTagIgnoringDamage() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("{id=test:sword,ench=sharpness}");
+        assertEquals(0, index.rank(sword, nbt("ench", "sharpness")));
+        assertEquals(0, index.rank(sword, nbt("ench", "sharpness", "Damage", "12")));
+        assertEquals(NO_MATCH, index.rank(sword, nbt("ench", "smite")));
+        assertEquals(NO_MATCH, index.rank(sword, null));
+    }
+
+    @Test
+    void partialEntriesRequireOnlyTheListedKeys() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("p:test:shield{color=red}", "p:*{ench=mending}");
+        assertEquals(0, index.rank(shield, nbt("color", "red", "pattern", "stripe")));
+        assertEquals(NO_MATCH, index.rank(shield, nbt("color", "blue")));
+        assertEquals(1, index.rank(sword, nbt("ench", "mending", "name", "Mine")));
+        assertEquals(NO_MATCH, index.rank(sword, null));
+    }
+
+    @Test
+    void capabilityEntryMatchesItemsThatHaveIt() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("c:shield_block");
+        assertEquals(0, index.rank(shield, null));
+        assertEquals(0, index.rank(shield, null)); // Memoised answer
+        assertEquals(NO_MATCH, index.rank(torch, null));
+        assertTrue(index.dependsOnTag(shield));
+        assertFalse(index.dependsOnTag(torch)); // Answered per item type at compile time
+    }
+
+    @Test
+    void capabilityEntryMatchesTagSensitiveItemsPerStack() {
+        FakePlatform.Item modularTool = platform.registerModular("test:modular_tool", "Modular Tool");
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("c:shield_block");
+        assertEquals(NO_MATCH, index.rank(modularTool, null)); // A plain stack can't block
+        assertEquals(0, index.rank(modularTool, nbt("actions", "axe_dig|shield_block")));
+        assertEquals(NO_MATCH, index.rank(modularTool, nbt("actions", "axe_dig")));
+        assertTrue(index.dependsOnTag(modularTool));
+        BitSet ids = new BitSet();
+        index.addItemIds(ids);
+        assertTrue(ids.get(modularTool.numericId));
+        assertTrue(ids.get(shield.numericId));
+        assertFalse(ids.get(torch.numericId));
+    }
+
+    @Test
+    void nameEntriesMatchDisplayNameSubstringsCaseInsensitively() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("n:Undying", "n:sword");
+        assertEquals(0, index.rank(totem, null));
+        assertEquals(1, index.rank(sword, null));
+        assertEquals(1, index.rank(torch, nbt("name", "Sword-shaped torch")));
+        assertEquals(NO_MATCH, index.rank(torch, null));
+    }
+
+    // --- Ranks ---
+
+    @Test
+    void ranksFollowEntryOrder() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("test:shield", "test:totem", "test:shield");
+        assertEquals(0, index.rank(shield, null));
+        assertEquals(1, index.rank(totem, null));
+    }
+
+    @Test
+    void bestRankWinsAcrossRuleKinds() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("n:sword", "{id=test:sword,ench=sharpness}", "test:sword");
+        assertEquals(0, index.rank(sword, nbt("ench", "sharpness")));
+
+        index = compile("test:sword", "{id=test:sword,ench=sharpness}", "n:sword");
+        assertEquals(0, index.rank(sword, nbt("ench", "sharpness")));
+
+        index = compile("{id=test:sword,ench=sharpness}", "p:*{ench=mending}", "test:sword");
+        assertEquals(0, index.rank(sword, nbt("ench", "sharpness")));
+        assertEquals(1, index.rank(sword, nbt("ench", "mending")));
+        assertEquals(2, index.rank(sword, null));
+    }
+
+    @Test
+    void itemEntryAndNamespaceWildcardKeepTheBetterRank() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("other:gem", "other:*");
+        assertEquals(0, index.rank(gem, null));
+        assertEquals(1, index.rank(otherThing, null));
+
+        index = compile("other:*", "other:gem");
+        assertEquals(0, index.rank(gem, null));
+    }
+
+    @Test
+    void nbtRulesBelowAPlainEntryAreDropped() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("test:sword", "{id=test:sword,ench=sharpness}");
+        assertEquals(0, index.rank(sword, nbt("ench", "sharpness")));
+        assertFalse(index.dependsOnTag(sword));
+    }
+
+    @Test
+    void denyLayerVetoesMatches() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = RuleIndex.compileLayered(platform,
+                Arrays.asList("test:torch", "#test:tools"), Arrays.asList("test:torch", "p:*{cursed=true}"));
+        assertEquals(NO_MATCH, index.rank(torch, null));
+        assertFalse(index.matches(torch, null));
+        assertEquals(1, index.rank(sword, null));
+        assertEquals(NO_MATCH, index.rank(sword, nbt("cursed", "true")));
+    }
+
+    @Test
+    void emptyDenyLayerLeavesTheAllowIndexAsIs() {
+        List<String> allow = Collections.singletonList("test:torch");
+        RuleIndex<FakePlatform.Item, Map<String, String>> layered = RuleIndex.compileLayered(platform, allow, Collections.emptyList());
+        assertEquals(RuleIndex.compile(platform, allow).contentHash(), layered.contentHash());
+        assertEquals(0, layered.rank(torch, null));
+    }
+
+    // --- Routing prefixes ---
+
+    @Test
+    void parseRouteReadsHotbarAndOffhandPrefixes() {
+        assertEquals(0, RuleIndex.parseRoute("@1:test:torch"));
+        assertEquals(8, RuleIndex.parseRoute("@9:test:torch"));
+        assertEquals(OFFHAND, RuleIndex.parseRoute("@offhand:test:torch"));
+        assertEquals(OFFHAND, RuleIndex.parseRoute("@OFFHAND:test:torch"));
+        assertEquals(OFFHAND, RuleIndex.parseRoute("test:torch"));
+    }
+
+    @Test
+    void parseRouteRejectsMalformedPrefixes() {
+        assertEquals(RuleIndex.INVALID_ROUTE, RuleIndex.parseRoute("@0:test:torch"));
+        assertEquals(RuleIndex.INVALID_ROUTE, RuleIndex.parseRoute("@10:test:torch"));
+        assertEquals(RuleIndex.INVALID_ROUTE, RuleIndex.parseRoute("@mainhand:test:torch"));
+        assertEquals(RuleIndex.INVALID_ROUTE, RuleIndex.parseRoute("@torch"));
+    }
+
+    @Test
+    void parseRouteRejectsNestedRoutesAndLateScopes() {
+        assertEquals(RuleIndex.INVALID_ROUTE, RuleIndex.parseRoute("@9:@1:test:torch"));
+        assertEquals(RuleIndex.INVALID_ROUTE, RuleIndex.parseRoute("@offhand:@9:test:torch"));
+        assertEquals(RuleIndex.INVALID_ROUTE, RuleIndex.parseRoute("@9:[dim:test:nether]test:torch"));
+        assertEquals(NO_MATCH, compile("@9:@1:test:torch").rank(torch, null));
+    }
+
+    @Test
+    void stripRouteRemovesOnlyThePrefix() {
+        assertEquals("test:torch", RuleIndex.stripRoute("@3:test:torch"));
+        assertEquals("test:torch", RuleIndex.stripRoute("test:torch"));
+    }
+
+    @Test
+    void targetSlotFollowsTheMatchingEntry() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("@3:test:torch", "test:shield", "@offhand:test:totem", "@x:test:sword");
+        assertTrue(index.hasHotbarRoutes());
+        assertEquals(2, index.targetSlot(index.rank(torch, null)));
+        assertEquals(OFFHAND, index.targetSlot(index.rank(shield, null)));
+        assertEquals(OFFHAND, index.targetSlot(index.rank(totem, null)));
+        assertEquals(NO_MATCH, index.rank(sword, null)); // Malformed route drops the entry
+        assertEquals(OFFHAND, index.targetSlot(NO_MATCH));
+        assertFalse(compile("test:torch").hasHotbarRoutes());
+    }
+
+    // --- Tag dependence and caching ---
+
+    @Test
+    void plainListsNeverFingerprint() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("test:torch", "#test:tools", "other:*");
+        assertFalse(index.dependsOnTag(torch));
+        assertFalse(index.dependsOnTag(shield));
+        index.rank(torch, nbt("big", "tag"));
+        index.rank(shield, nbt("big", "tag"));
+        assertEquals(0, platform.fingerprintCalls);
+    }
+
+    @Test
+    void tagDependenceIsPerItemForNbtRules() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("{id=test:sword,ench=sharpness}", "test:torch");
+        assertTrue(index.dependsOnTag(sword));
+        assertFalse(index.dependsOnTag(torch));
+        assertTrue(compile("n:torch").dependsOnTag(torch));
+        assertTrue(compile("p:*{ench=mending}").dependsOnTag(torch));
+        assertTrue(RuleIndex.compileLayered(platform, Collections.singletonList("test:torch"),
+                Collections.singletonList("{id=test:torch,lit=false}")).dependsOnTag(torch));
+    }
+
+    @Test
+    void partialRulesAreNeverDecidedByFingerprint() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("p:test:shield{color=red}", "{id=test:sword,ench=sharpness}");
+        assertFalse(index.isDecidedByFingerprint(shield, 0));
+        int sharpness = platform.fingerprint(nbt("ench", "sharpness"));
+        assertFalse(index.isDecidedByFingerprint(sword, sharpness));
+        assertTrue(index.isDecidedByFingerprint(sword, sharpness + 1));
+        assertTrue(index.isDecidedByFingerprint(torch, 0));
+    }
+
+    // --- Prefilter support ---
+
+    @Test
+    void addItemIdsCoversEveryItemTypeRule() {
+        RuleIndex<FakePlatform.Item, Map<String, String>> index = compile("test:torch", "#test:tools", "other:*",
+                "{id=test:shield,color=red}", "p:test:totem{charged=true}", "c:pickaxe_dig");
+        BitSet ids = new BitSet();
+        index.addItemIds(ids);
+        for (FakePlatform.Item item : Arrays.asList(torch, sword, pickaxe, gem, otherThing, shield, totem)) {
+            assertTrue(ids.get(item.numericId), item.id);
+        }
+        assertFalse(index.matchesAnyItemType());
+        BitSet capabilityIds = new BitSet();
+        compile("c:shield_block").addItemIds(capabilityIds);
+        assertEquals(1, capabilityIds.cardinality());
+        assertTrue(capabilityIds.get(shield.numericId));
+        assertFalse(compile("c:shield_block").matchesAnyItemType());
+        assertTrue(compile("n:torch").matchesAnyItemType());
+        assertTrue(compile("p:*{ench=mending}").matchesAnyItemType());
+    }
+}
@@ -0,0 +1,110 @@
+package com.thunderscore.autooffhand;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.TagParser;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.registries.ForgeRegistries;
+
+/**
+ * Shared setup for the JMH benchmarks: boots the vanilla registries once and generates synthetic config lists.
+ */
+public final class BenchmarkSupport {
+
+    // Items used for synthetic NBT entries; all of them carry enchantments and custom names in real configs
+    private static final String[] NBT_ITEM_IDS = {
+            "minecraft:diamond_sword", "minecraft:netherite_sword", "minecraft:shield",
+            "minecraft:trident", "minecraft:bow", "minecraft:crossbow", "minecraft:totem_of_undying"
+    };
+
+    private static boolean bootstrapped = false;
+
+    private BenchmarkSupport() {} // Prevent instantiation
+
+    /**
+     * Loads the vanilla registries so ItemStacks, ForgeRegistries and TagParser work outside a running game.
+     */
+    public static synchronized void bootstrap() {
+        if (!bootstrapped) {
+            SharedConstants.tryDetectVersion();
+            Bootstrap.bootStrap();
+            bootstrapped = true;
+        }
+    }
+
+    /**
+     * Generates plain registry-name entries, cycling through the item registry in a stable order.
+     *
+     * @param size The number of entries to generate.
+     */
+    public static List<String> plainIdEntries(int size) {
+        List<ResourceLocation> keys = new ArrayList<>(ForgeRegistries.ITEMS.getKeys());
+        keys.sort(null);
+        List<String> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(keys.get(i % keys.size()).toString());
+        }
+        return entries;
+    }
+
+    /**
+     * Generates distinct "n:" display-name substring entries that no vanilla or generated name contains.
+     *
+     * @param size The number of entries to generate.
+     */
+    public static List<String> nameEntries(int size) {
+        List<String> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add("n:runeword" + i + "q");
+        }
+        return entries;
+    }
+
+    /**
+     * Generates distinct SNBT entries shaped like the GUI's left-click entries for enchanted, renamed gear.
+     *
+     * @param size The number of entries to generate.
+     * @param loreLines The number of lore lines per entry, to scale the size of each tag.
+     */
+    public static List<String> nbtEntries(int size, int loreLines) {
+        List<String> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(nbtEntry(i, loreLines));
+        }
+        return entries;
+    }
+
+    /**
+     * Builds the i-th synthetic SNBT entry; the same index always yields the same entry.
+     */
+    public static String nbtEntry(int index, int loreLines) {
+        StringBuilder lore = new StringBuilder();
+        for (int line = 0; line < loreLines; line++) {
+            if (line > 0) {
+                lore.append(',');
+            }
+            lore.append("'{\"text\":\"Lore line ").append(line).append(" of entry ").append(index).append("\"}'");
+        }
+        return "{id:\"" + NBT_ITEM_IDS[index % NBT_ITEM_IDS.length] + "\",Count:1b,tag:{"
+                + "display:{Name:'{\"text\":\"Gear #" + index + "\"}',Lore:[" + lore + "]},"
+                + "Enchantments:[{id:\"minecraft:unbreaking\",lvl:" + (1 + index % 3) + "s},{id:\"minecraft:mending\",lvl:1s}],"
+                + "RepairCost:" + (index % 40) + "}}";
+    }
+
+    /**
+     * Parses an SNBT entry into the ItemStack it describes, keeping any Damage tag.
+     */
+    public static ItemStack stackOf(String snbt) {
+        try {
+            CompoundTag nbt = TagParser.parseTag(snbt);
+            return ItemStack.of(nbt);
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid synthetic SNBT: " + snbt, e);
+        }
+    }
+}
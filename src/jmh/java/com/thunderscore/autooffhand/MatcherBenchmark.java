@@ -0,0 +1,116 @@
+package com.thunderscore.autooffhand;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.thunderscore.autooffhand.config.CompiledRuleIndex;
+import com.thunderscore.autooffhand.config.ConfigItemUtils;
+
+import net.minecraft.network.chat.TextComponent;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraftforge.registries.ForgeRegistries;
+
+/**
+ * Measures the pickup matcher (shouldMoveToOffhand minus the capability lookup) across list sizes.
+ * The baseline benchmark reproduces the old parse-and-scan loop for before/after comparisons.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatcherBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int listSize;
+
+    // PLAIN: registry-name entries only; NBT: enchanted, renamed gear entries; NAME: "n:" display-name substrings
+    @Param({"PLAIN", "NBT", "NAME"})
+    public String entryKind;
+
+    private List<String> entries;
+    private CompiledRuleIndex rules;
+    private ItemStack hitStack;
+    private ItemStack missStack;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkSupport.bootstrap();
+        if ("PLAIN".equals(entryKind)) {
+            entries = BenchmarkSupport.plainIdEntries(listSize);
+            hitStack = new ItemStack(ForgeRegistries.ITEMS.getValue(new ResourceLocation(entries.get(entries.size() - 1))));
+        } else if ("NAME".equals(entryKind)) {
+            entries = BenchmarkSupport.nameEntries(listSize);
+            hitStack = new ItemStack(Items.DIAMOND_SWORD).setHoverName(new TextComponent("Blade of " + entries.get(entries.size() - 1).substring(2)));
+        } else {
+            entries = BenchmarkSupport.nbtEntries(listSize, 4);
+            hitStack = BenchmarkSupport.stackOf(entries.get(entries.size() - 1));
+        }
+        // A renamed sword that no entry matches, but that shares its Item with NBT candidates
+        missStack = BenchmarkSupport.stackOf(BenchmarkSupport.nbtEntry(listSize + 1, 4));
+        if (missStack.getItem() == Items.AIR) {
+            missStack = new ItemStack(Items.DIRT);
+        }
+        rules = CompiledRuleIndex.compile(entries);
+        MatchDecisionCache.invalidate();
+    }
+
+    @Benchmark
+    public boolean matchHit() {
+        return rules.matches(hitStack);
+    }
+
+    @Benchmark
+    public boolean matchMiss() {
+        return rules.matches(missStack);
+    }
+
+    @Benchmark
+    public boolean evaluateCachedHit() {
+        return ForgeEventHandler.evaluate(rules, hitStack, false);
+    }
+
+    @Benchmark
+    public boolean evaluateCachedMiss() {
+        return ForgeEventHandler.evaluate(rules, missStack, false);
+    }
+
+    @Benchmark
+    public CompiledRuleIndex compileInterned() {
+        return CompiledRuleIndex.compile(entries);
+    }
+
+    @Benchmark
+    public boolean baselineParseAndScanMiss() {
+        ResourceLocation registryName = ForgeRegistries.ITEMS.getKey(missStack.getItem());
+        for (String entry : entries) {
+            Object parsedEntry = ConfigItemUtils.parseConfigEntry(entry);
+            if (parsedEntry instanceof ResourceLocation) {
+                if (registryName.equals(parsedEntry)) {
+                    return true;
+                }
+            } else if (parsedEntry instanceof ItemStack) {
+                if (ConfigItemUtils.stacksMatchIgnoreDamageAndCount((ItemStack) parsedEntry, missStack)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,79 @@
+package com.thunderscore.autooffhand;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.thunderscore.autooffhand.config.ConfigItemUtils;
+
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * Measures config entry parsing and NBT stack comparison for small and large tags.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NbtMatchBenchmark {
+
+    // Lore lines per synthetic entry; scales the tag from a few hundred bytes to several kilobytes
+    @Param({"1", "16", "128"})
+    public int loreLines;
+
+    private String plainEntry;
+    private String nbtEntry;
+    private ItemStack configStack;
+    private ItemStack equalDamagedStack;
+    private ItemStack differentStack;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkSupport.bootstrap();
+        plainEntry = "minecraft:totem_of_undying";
+        nbtEntry = BenchmarkSupport.nbtEntry(0, loreLines);
+        configStack = (ItemStack) ConfigItemUtils.parseConfigEntry(nbtEntry);
+        equalDamagedStack = BenchmarkSupport.stackOf(nbtEntry);
+        equalDamagedStack.setDamageValue(17); // Damage is ignored by matching
+        // Same item type (index 7 cycles back to the same item id) with different enchantment levels
+        differentStack = BenchmarkSupport.stackOf(BenchmarkSupport.nbtEntry(7, loreLines));
+    }
+
+    @Benchmark
+    public Object parsePlainEntry() {
+        return ConfigItemUtils.parseConfigEntry(plainEntry);
+    }
+
+    @Benchmark
+    public Object parseNbtEntry() {
+        return ConfigItemUtils.parseConfigEntry(nbtEntry);
+    }
+
+    @Benchmark
+    public boolean stacksMatchEqual() {
+        return ConfigItemUtils.stacksMatchIgnoreDamageAndCount(configStack, equalDamagedStack);
+    }
+
+    @Benchmark
+    public boolean stacksMatchDifferent() {
+        return ConfigItemUtils.stacksMatchIgnoreDamageAndCount(configStack, differentStack);
+    }
+
+    @Benchmark
+    public int fingerprint() {
+        return ConfigItemUtils.nbtFingerprint(equalDamagedStack.getTag());
+    }
+}
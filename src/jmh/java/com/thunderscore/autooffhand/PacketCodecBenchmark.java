@@ -0,0 +1,89 @@
+package com.thunderscore.autooffhand;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.thunderscore.autooffhand.network.SyncConfigPacket;
+import com.thunderscore.autooffhand.network.UpdateConfigPacket;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+
+/**
+ * Measures encode/decode of the config sync packets for plain-ID and SNBT lists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketCodecBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int listSize;
+
+    @Param({"PLAIN", "NBT"})
+    public String entryKind;
+
+    private SyncConfigPacket syncPacket;
+    private UpdateConfigPacket updatePacket;
+    private FriendlyByteBuf writeBuffer;
+    private FriendlyByteBuf syncBytes;
+    private FriendlyByteBuf updateBytes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkSupport.bootstrap();
+        List<String> entries = "PLAIN".equals(entryKind)
+                ? BenchmarkSupport.plainIdEntries(listSize)
+                : BenchmarkSupport.nbtEntries(listSize, 4);
+        syncPacket = new SyncConfigPacket(entries, false);
+        updatePacket = new UpdateConfigPacket(entries, false);
+        writeBuffer = new FriendlyByteBuf(Unpooled.buffer());
+
+        syncBytes = new FriendlyByteBuf(Unpooled.buffer());
+        SyncConfigPacket.encode(syncPacket, syncBytes);
+        updateBytes = new FriendlyByteBuf(Unpooled.buffer());
+        UpdateConfigPacket.encode(updatePacket, updateBytes);
+    }
+
+    @Benchmark
+    public FriendlyByteBuf encodeSync() {
+        writeBuffer.clear();
+        SyncConfigPacket.encode(syncPacket, writeBuffer);
+        return writeBuffer;
+    }
+
+    @Benchmark
+    public SyncConfigPacket decodeSync() {
+        syncBytes.readerIndex(0);
+        return SyncConfigPacket.decode(syncBytes);
+    }
+
+    @Benchmark
+    public FriendlyByteBuf encodeUpdate() {
+        writeBuffer.clear();
+        UpdateConfigPacket.encode(updatePacket, writeBuffer);
+        return writeBuffer;
+    }
+
+    @Benchmark
+    public UpdateConfigPacket decodeUpdate() {
+        updateBytes.readerIndex(0);
+        return UpdateConfigPacket.decode(updateBytes);
+    }
+}
@@ -42,8 +42,12 @@ public class AutoOffhand {
         modEventBus.addListener(this::clientSetup);
         // Register capability registration event handler
         modEventBus.addListener(this::registerCapabilities);
-        // Register the static onCommonSetup method from ForgeEventHandler for the FMLCommonSetupEvent
-        modEventBus.addListener(ForgeEventHandler::onCommonSetup);
+        // Returnable projectile types: built-ins during common setup, then those other mods send over IMC
+        modEventBus.addListener(ReturnableProjectiles::registerBuiltIns);
+        modEventBus.addListener(ReturnableProjectiles::processIMC);
+        // Keep the compiled global list in sync with the server config file
+        modEventBus.addListener(ModConfig::onConfigLoading);
+        modEventBus.addListener(ModConfig::onConfigReloading);
 
         // Register Forge event bus listeners
         MinecraftForge.EVENT_BUS.register(this); // For onRegisterCommands
@@ -0,0 +1,115 @@
+package com.thunderscore.autooffhand;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import com.thunderscore.autooffhand.config.ConfigItemUtils;
+
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * End-of-tick queue of deferred offhand checks (e.g. after a returning trident lands in the inventory).
+ * Work is queued per player and de-duplicated by item and NBT fingerprint, so a burst of identical returns
+ * costs one check. The queue is drained once per server tick within a time budget; whatever is left carries
+ * over to the next tick, so a raid's worth of trident returns can't stretch a single tick.
+ * <p>
+ * Only touched from the server thread.
+ */
+public final class DeferredOffhandChecks {
+
+    // Players with pending work, in the order they first queued it; each with its de-duplicated checks in order
+    private static final Map<Player, Map<Key, ItemStack>> PENDING = new LinkedHashMap<>();
+
+    private DeferredOffhandChecks() {} // Prevent instantiation
+
+    /**
+     * Queues a check for the given item. A check for the same item and NBT already pending for the player is kept instead.
+     *
+     * @param player The player whose inventory will be checked.
+     * @param stack The item to look for (type and NBT; the count is ignored). Copied.
+     */
+    static void enqueue(Player player, ItemStack stack) {
+        Key key = new Key(stack.getItem(), ConfigItemUtils.nbtFingerprint(stack.getTag()));
+        PENDING.computeIfAbsent(player, p -> new LinkedHashMap<>()).putIfAbsent(key, stack.copy());
+    }
+
+    /**
+     * Runs pending checks in queue order until the budget is spent. At least one check runs per call,
+     * so the queue always makes progress.
+     *
+     * @param budgetNanos Time allowed for this tick.
+     * @param check Performs one check.
+     * @return The number of checks left for later ticks.
+     */
+    static int drain(long budgetNanos, BiConsumer<Player, ItemStack> check) {
+        if (PENDING.isEmpty()) {
+            return 0;
+        }
+        long deadline = System.nanoTime() + budgetNanos;
+        Iterator<Map.Entry<Player, Map<Key, ItemStack>>> players = PENDING.entrySet().iterator();
+        while (players.hasNext()) {
+            Map.Entry<Player, Map<Key, ItemStack>> entry = players.next();
+            Player player = entry.getKey();
+            Iterator<ItemStack> checks = entry.getValue().values().iterator();
+            while (checks.hasNext()) {
+                ItemStack stack = checks.next();
+                checks.remove();
+                // Players that logged out or respawned since are dropped; the new instance queues its own work
+                if (!player.isRemoved()) {
+                    check.accept(player, stack);
+                }
+                if (System.nanoTime() >= deadline) {
+                    if (!checks.hasNext()) {
+                        players.remove();
+                    }
+                    return pendingCount();
+                }
+            }
+            players.remove();
+        }
+        return 0;
+    }
+
+    /**
+     * Drops all pending checks, e.g. when the server stops.
+     */
+    static void clear() {
+        PENDING.clear();
+    }
+
+    private static int pendingCount() {
+        int count = 0;
+        for (Map<Key, ItemStack> checks : PENDING.values()) {
+            count += checks.size();
+        }
+        return count;
+    }
+
+    // Item identity plus NBT fingerprint
+    private static final class Key {
+        private final Item item;
+        private final int fingerprint;
+
+        Key(Item item, int fingerprint) {
+            this.item = item;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return item == other.item && fingerprint == other.fingerprint;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(item) + fingerprint;
+        }
+    }
+}
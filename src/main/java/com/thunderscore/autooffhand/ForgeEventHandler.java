@@ -1,42 +1,44 @@
 package com.thunderscore.autooffhand;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.function.Function;
 
 import com.thunderscore.autooffhand.capability.IPlayerConfig;
 import com.thunderscore.autooffhand.capability.PlayerConfigCapability;
 import com.thunderscore.autooffhand.capability.PlayerConfigProvider;
+import com.thunderscore.autooffhand.config.CompiledRuleIndex;
 import com.thunderscore.autooffhand.config.ConfigItemUtils;
 import com.thunderscore.autooffhand.config.ModConfig;
 import com.thunderscore.autooffhand.network.NetworkHandler;
 import com.thunderscore.autooffhand.network.SyncConfigPacket;
 
-import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.Connection;
 import net.minecraft.resources.ResourceLocation;
-import net.minecraft.server.MinecraftServer;
-import net.minecraft.server.TickTask;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.InteractionHand;
 import net.minecraft.world.entity.Entity;
-import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.entity.EquipmentSlot;
 import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.entity.player.Inventory;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.entity.projectile.AbstractArrow;
 import net.minecraft.world.entity.projectile.Projectile;
-import net.minecraft.world.entity.projectile.ThrownTrident;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
-import net.minecraft.world.item.Items;
+import net.minecraft.world.item.enchantment.EnchantmentHelper;
+import net.minecraft.world.level.GameType;
 import net.minecraftforge.common.util.LazyOptional;
 import net.minecraftforge.event.AttachCapabilitiesEvent;
+import net.minecraftforge.event.TagsUpdatedEvent;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.event.entity.EntityLeaveWorldEvent;
+import net.minecraftforge.event.entity.living.LivingEquipmentChangeEvent;
 import net.minecraftforge.event.entity.player.EntityItemPickupEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.server.ServerStoppingEvent;
 import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
-import net.minecraftforge.fml.ModList;
-import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
 import net.minecraftforge.network.PacketDistributor;
 import net.minecraftforge.registries.ForgeRegistries;
 
@@ -45,35 +47,9 @@ public class ForgeEventHandler {
 
     // Identifier for our capability provider
     private static final ResourceLocation PLAYER_CONFIG_CAP_ID = new ResourceLocation(AutoOffhand.MOD_ID, "player_config");
-
-    // Set to store EntityTypes that should trigger the offhand check on return
-    private static final Set<EntityType<?>> RETURNABLE_PROJECTILE_TYPES = new HashSet<>();
-    private static final ResourceLocation TETRA_THROWN_MODULAR_ITEM_ID = new ResourceLocation("tetra", "thrown_modular_item");
-
-    /**
-     * Populates the set of returnable projectile types during common setup.
-     * Includes Trident by default and adds Tetra's item if the mod is loaded.
-     */
-    public static void onCommonSetup(FMLCommonSetupEvent event) {
-        event.enqueueWork(() -> { // Use enqueueWork for registry access safety
-            RETURNABLE_PROJECTILE_TYPES.add(EntityType.TRIDENT);
-            AutoOffhand.LOGGER.debug("Added TRIDENT to returnable projectile types.");
-
-            // Check if Tetra mod is loaded
-            if (ModList.get().isLoaded("tetra")) {
-                EntityType<?> tetraItemType = ForgeRegistries.ENTITIES.getValue(TETRA_THROWN_MODULAR_ITEM_ID); // Use ENTITIES registry
-                if (tetraItemType != null && tetraItemType != EntityType.PIG) { // Check it's not the default fallback
-                    RETURNABLE_PROJECTILE_TYPES.add(tetraItemType);
-                    AutoOffhand.LOGGER.info("Tetra mod detected. Added {} to returnable projectile types.", TETRA_THROWN_MODULAR_ITEM_ID);
-                } else {
-                    AutoOffhand.LOGGER.warn("Tetra mod is loaded, but its entity type '{}' could not be found in the registry.", TETRA_THROWN_MODULAR_ITEM_ID);
-                }
-            } else {
-                AutoOffhand.LOGGER.debug("Tetra mod not detected. Skipping its returnable projectile type.");
-            }
-        });
-    }
-
+    // Horizontal growth of the owner's bounding box when deciding whether a discarded projectile was picked up;
+    // players touch entities within 1 block (0.5 vertically), with some slack for mounted players
+    private static final double PICKUP_REACH = 2.0D;
 
     // --- Capability Event Handlers ---
 
@@ -85,28 +61,40 @@ public class ForgeEventHandler {
         if (event.getObject() instanceof Player) {
             PlayerConfigProvider provider = new PlayerConfigProvider();
             event.addCapability(PLAYER_CONFIG_CAP_ID, provider);
+            if (!event.getObject().getLevel().isClientSide()) {
+                // Server-side lists (fake players included) feed the pickup prefilter
+                provider.getCapability(PlayerConfigCapability.PLAYER_CONFIG_CAPABILITY).ifPresent(cap -> {
+                    OffhandPrefilter.track(cap);
+                    // The game mode isn't set up yet this early; login/respawn fill it in
+                    cap.setScope(event.getObject().getLevel().dimension(), null);
+                });
+            }
         }
     }
 
     /**
-     * Copies capability data from the old player instance to the new one when the player respawns.
+     * Copies capability data from the old player instance to the new one when the player respawns,
+     * and releases the old instance: its list leaves the prefilter union and its inventory is no longer watched.
      */
     @SubscribeEvent
     public static void onPlayerClone(PlayerEvent.Clone event) {
-        // Only copy data if the player is actually respawning (not first join)
-        if (event.isWasDeath()) {
-            Player originalPlayer = event.getOriginal();
-            Player newPlayer = event.getPlayer();
-
-            // Get capability from original and new player, then copy data
-            originalPlayer.getCapability(PlayerConfigCapability.PLAYER_CONFIG_CAPABILITY).ifPresent(oldCap -> {
+        Player originalPlayer = event.getOriginal();
+        Player newPlayer = event.getPlayer();
+        // The old instance's capabilities are invalidated by now; revive them long enough to read them
+        originalPlayer.reviveCaps();
+        originalPlayer.getCapability(PlayerConfigCapability.PLAYER_CONFIG_CAPABILITY).ifPresent(oldCap -> {
+            // Only copy data if the player is actually respawning (not first join)
+            if (event.isWasDeath()) {
                 newPlayer.getCapability(PlayerConfigCapability.PLAYER_CONFIG_CAPABILITY).ifPresent(newCap -> {
                     // Copy the data using NBT serialization/deserialization
                     newCap.deserializeNBT(oldCap.serializeNBT());
                     AutoOffhand.LOGGER.debug("Cloned PlayerConfig capability data for player: {}", newPlayer.getName().getString());
                 });
-            });
-        }
+            }
+            OffhandPrefilter.untrack(oldCap);
+        });
+        originalPlayer.invalidateCaps();
+        InventoryWatcher.detach(originalPlayer);
     }
 
     /**
@@ -118,6 +106,8 @@ public class ForgeEventHandler {
         if (player instanceof ServerPlayer) {
             ServerPlayer serverPlayer = (ServerPlayer) player;
             LazyOptional<IPlayerConfig> capOpt = serverPlayer.getCapability(PlayerConfigCapability.PLAYER_CONFIG_CAPABILITY);
+            capOpt.ifPresent(cap -> cap.setScope(serverPlayer.getLevel().dimension(), serverPlayer.gameMode.getGameModeForPlayer()));
+            InventoryWatcher.attach(serverPlayer);
 
             // Get the Connection (previously NetworkManager)
             Connection connection = serverPlayer.connection.connection;
@@ -146,6 +136,38 @@ public class ForgeEventHandler {
         }
     }
 
+    /**
+     * Drops the player's list from the prefilter union and stops watching their inventory when they log out.
+     */
+    @SubscribeEvent
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        if (event.getPlayer() instanceof ServerPlayer) {
+            event.getPlayer().getCapability(PlayerConfigCapability.PLAYER_CONFIG_CAPABILITY).ifPresent(OffhandPrefilter::untrack);
+            InventoryWatcher.detach(event.getPlayer());
+        }
+    }
+
+    /**
+     * Recompiles tag entries when item tags are (re)loaded, e.g. on server start or /reload.
+     * Player lists recompile lazily on their next use; the global list is rebuilt right away.
+     * Only server data loads count: on an integrated server the client's tag sync fires this too, on the client thread.
+     */
+    @SubscribeEvent
+    public static void onTagsUpdated(TagsUpdatedEvent event) {
+        if (event.getUpdateCause() != TagsUpdatedEvent.UpdateCause.SERVER_DATA_LOAD) {
+            return;
+        }
+        CompiledRuleIndex.onTagsReloaded();
+        if (ModConfig.SERVER_SPEC.isLoaded()) {
+            ModConfig.SERVER.rebuildGlobalRules(); // Also invalidates the decision cache and prefilter
+        } else {
+            // Server config is not loaded yet (initial data pack load); it compiles against the new tags when it is
+            MatchDecisionCache.invalidate();
+            OffhandPrefilter.markDirty();
+        }
+        AutoOffhand.LOGGER.debug("Item tags updated ({}), recompiling AutoOffhand lists.", event.getUpdateCause());
+    }
+
      /**
      * Sends the player's capability data to the client when they change dimensions.
      * This is important because capabilities might not persist automatically across dimension changes.
@@ -157,6 +179,8 @@ public class ForgeEventHandler {
             ServerPlayer serverPlayer = (ServerPlayer) player;
             // Get capability data and send it via packet
             serverPlayer.getCapability(PlayerConfigCapability.PLAYER_CONFIG_CAPABILITY).ifPresent(cap -> {
+                // Select the rules scoped to the new dimension
+                cap.setScope(event.getTo(), serverPlayer.gameMode.getGameModeForPlayer());
                 List<String> playerList = cap.getConfigList(); // Get the actual list
                 AutoOffhand.LOGGER.debug("Syncing PlayerConfig capability data to client {} on dimension change ({} entries).", serverPlayer.getName().getString(), playerList.size());
                 // Indicate this sync is for the player config (isServerConfig = false)
@@ -165,6 +189,33 @@ public class ForgeEventHandler {
         }
     }
 
+    /**
+     * Re-selects the player's scoped rules after respawning, which may land them in another dimension,
+     * and watches the new player instance's inventory.
+     */
+    @SubscribeEvent
+    public static void onPlayerRespawn(PlayerEvent.PlayerRespawnEvent event) {
+        if (event.getPlayer() instanceof ServerPlayer) {
+            ServerPlayer serverPlayer = (ServerPlayer) event.getPlayer();
+            serverPlayer.getCapability(PlayerConfigCapability.PLAYER_CONFIG_CAPABILITY).ifPresent(cap ->
+                    cap.setScope(serverPlayer.getLevel().dimension(), serverPlayer.gameMode.getGameModeForPlayer()));
+            InventoryWatcher.attach(serverPlayer);
+        }
+    }
+
+    /**
+     * Re-selects the player's scoped rules when their game mode changes.
+     * The event fires before the change is applied, so the new mode is taken from the event.
+     */
+    @SubscribeEvent
+    public static void onPlayerChangeGameMode(PlayerEvent.PlayerChangeGameModeEvent event) {
+        Player player = event.getPlayer();
+        if (!player.getLevel().isClientSide()) {
+            player.getCapability(PlayerConfigCapability.PLAYER_CONFIG_CAPABILITY).ifPresent(cap ->
+                    cap.setScope(player.getLevel().dimension(), event.getNewGameMode()));
+        }
+    }
+
     // --- Item Pickup Logic ---
 
     // Add HIGHEST priority to the event subscription
@@ -175,24 +226,192 @@ public class ForgeEventHandler {
         if (player.getLevel().isClientSide()) {
             return;
         }
-        AutoOffhand.LOGGER.debug("Server-Side EntityItemPickupEvent fired for player: {}, item: {}", player.getName().getString(), event.getItem().getItem());
         ItemEntity itemEntity = event.getItem();
         ItemStack pickedUpStack = itemEntity.getItem();
 
-        if (shouldMoveToOffhand(player, pickedUpStack)) {
-            ItemStack offhandStack = player.getItemInHand(InteractionHand.OFF_HAND);
+        // --- Fast path: reject before any registry or capability lookup ---
+        // Without displacement an occupied offhand takes nothing, unless some list may route the item to the hotbar instead
+        if (!ModConfig.SERVER.replaceLowerPriorityOffhand.get() && !player.getItemInHand(InteractionHand.OFF_HAND).isEmpty()
+                && !OffhandPrefilter.mayRouteToHotbar()) {
+            return;
+        }
+        if (pickedUpStack.isEmpty() || !OffhandPrefilter.mayMatch(pickedUpStack.getItem())) {
+            return;
+        }
+        boolean trace = Trace.enabled(Trace.Category.PICKUP, player);
+        if (trace) {
+            Trace.log(Trace.Category.PICKUP, "Pickup passed prefilter for player {}: {}", player.getName().getString(), pickedUpStack);
+        }
 
-            if (offhandStack.isEmpty()) {
-                player.setItemInHand(InteractionHand.OFF_HAND, pickedUpStack.copy());
-                pickedUpStack.setCount(0); // Remove the item from the pickup event stack
+        CompiledRuleIndex rules = activeRules(player);
+        int pickupRank = rank(player, rules, pickedUpStack);
+        if (pickupRank == CompiledRuleIndex.NO_MATCH) {
+            return;
+        }
+        // The matching entry's routing prefix picks the slot: the offhand, or a hotbar slot
+        int target = rules.targetSlot(pickupRank);
+        if (!outranksSlot(player, rules, pickupRank, target)) {
+            return;
+        }
 
+        if (ModConfig.SERVER.batchPickupsPerTick.get()) {
+            // Hold back only the best candidate of the tick per slot; it is placed once in onServerTick
+            if (PickupBatcher.offer(player, itemEntity, pickupRank, target)) {
                 event.setCanceled(true);
-                if (!itemEntity.isRemoved()) {
-                    itemEntity.discard();
+                if (trace) {
+                    Trace.log(Trace.Category.PICKUP, "Held back pickup (rank {}, slot {}) until the end of the tick for player: {}", pickupRank, target, player.getName().getString());
                 }
-                AutoOffhand.LOGGER.debug("Moved item to offhand for player: {}", player.getName().getString());
             }
-            // TODO: Add logic here for if the offhand is not empty but you want to replace it (i.e., prioritize certain items)
+            return;
+        }
+
+        moveToSlot(player, itemEntity, target, trace);
+        event.setCanceled(true);
+    }
+
+    /**
+     * Places each player's best held-back pickup of the tick (batched mode), then runs the deferred
+     * returning-projectile checks within the configured time budget.
+     * Ranks are checked again since the offhand, the rules or the item may have changed during the tick.
+     */
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+        PickupBatcher.drain((player, itemEntity) -> {
+            if (player.isRemoved() || !player.isAlive() || !itemEntity.isAlive()) {
+                return;
+            }
+            ItemStack stack = itemEntity.getItem();
+            CompiledRuleIndex rules = activeRules(player);
+            int rank = rank(player, rules, stack);
+            if (rank == CompiledRuleIndex.NO_MATCH) {
+                return;
+            }
+            int target = rules.targetSlot(rank);
+            if (outranksSlot(player, rules, rank, target)) {
+                moveToSlot(player, itemEntity, target, Trace.enabled(Trace.Category.PICKUP, player));
+            }
+            // Otherwise it stays on the ground and is picked up normally
+        });
+        long budgetNanos = ModConfig.SERVER.deferredCheckBudgetMicros.get() * 1000L;
+        int carried = DeferredOffhandChecks.drain(budgetNanos, ForgeEventHandler::checkAndMoveSpecificInventoryItem);
+        if (carried > 0 && Trace.enabled(Trace.Category.PROJECTILE)) {
+            Trace.log(Trace.Category.PROJECTILE, "Deferred offhand check budget spent, {} checks carried over to the next tick.", carried);
+        }
+    }
+
+    /**
+     * Drops pickups still held back, pending checks, tracked projectiles and inventory watchers when the server stops.
+     */
+    @SubscribeEvent
+    public static void onServerStopping(ServerStoppingEvent event) {
+        PickupBatcher.clear();
+        DeferredOffhandChecks.clear();
+        ReturnableProjectiles.clearTracked();
+        InventoryWatcher.clear();
+    }
+
+    // --- Offhand Auto-Refill ---
+
+    /**
+     * Refills the offhand from the main inventory when it runs empty (auto-refill mode): a totem of undying used up,
+     * the last item of a stack eaten, placed or thrown, ...
+     * Forge for 1.18.2 has no totem-use event; a used-up totem empties the offhand and is caught here like any other stack.
+     * The best slot comes from the player's match index (see {@link InventoryWatcher}), so the inventory isn't scanned.
+     */
+    @SubscribeEvent
+    public static void onEquipmentChange(LivingEquipmentChangeEvent event) {
+        if (event.getSlot() != EquipmentSlot.OFFHAND || !event.getTo().isEmpty() || event.getFrom().isEmpty()) {
+            return;
+        }
+        if (!(event.getEntityLiving() instanceof ServerPlayer) || !ModConfig.SERVER.autoRefillOffhand.get()) {
+            return;
+        }
+        ServerPlayer player = (ServerPlayer) event.getEntityLiving();
+        if (player.isDeadOrDying() || player.isSpectator()) {
+            return;
+        }
+        boolean trace = Trace.enabled(Trace.Category.REFILL, player);
+        ItemStack previousStack = event.getFrom();
+        // The stack was moved by the player rather than used up: the cursor, main hand or inventory just gained it
+        if (InventoryWatcher.movedIntoInventory(player, previousStack)) {
+            if (trace) {
+                Trace.log(Trace.Category.REFILL, "Offhand of player {} was emptied by moving {}. Not refilling.", player.getName().getString(), previousStack);
+            }
+            return;
+        }
+
+        int slot = InventoryWatcher.bestOffhandSlot(player, activeRules(player));
+        if (slot < 0) {
+            if (trace) {
+                Trace.log(Trace.Category.REFILL, "No offhand item left in the inventory of player {} to replace {}.", player.getName().getString(), previousStack);
+            }
+            return;
+        }
+        ItemStack refillStack = player.getInventory().getItem(slot);
+        // Guards against an index entry the menu never reported as changed
+        if (!shouldMoveToOffhand(player, refillStack)) {
+            return;
+        }
+        if (trace) {
+            Trace.log(Trace.Category.REFILL, "Refilling offhand of player {} with {} from inventory slot {}.", player.getName().getString(), refillStack, slot);
+        }
+        player.setItemInHand(InteractionHand.OFF_HAND, refillStack.copy()); // Move a copy
+        player.getInventory().setItem(slot, ItemStack.EMPTY);
+    }
+
+    // The stack in a target slot: the offhand or a hotbar slot
+    private static ItemStack stackInSlot(Player player, int target) {
+        return target == CompiledRuleIndex.OFFHAND ? player.getItemInHand(InteractionHand.OFF_HAND) : player.getInventory().getItem(target);
+    }
+
+    // Whether a stack of the given rank may take the target slot: it is empty, or holds a matched item of lower
+    // priority (higher rank) that can be moved to a free inventory slot.
+    // Both ranks come from the same precomputed table, and the held item's rank is usually cached.
+    private static boolean outranksSlot(Player player, CompiledRuleIndex rules, int rank, int target) {
+        ItemStack heldStack = stackInSlot(player, target);
+        if (heldStack.isEmpty()) {
+            return true;
+        }
+        if (!ModConfig.SERVER.replaceLowerPriorityOffhand.get()) {
+            return false;
+        }
+        int heldRank = rank(player, rules, heldStack);
+        if (heldRank == CompiledRuleIndex.NO_MATCH || rank >= heldRank) {
+            return false; // Items the player put there by hand, and equal or better ones, stay
+        }
+        // The displaced stack goes to an empty main-inventory slot; without one, leave everything as is
+        return player.getInventory().getFreeSlot() >= 0;
+    }
+
+    // Moves the item entity's stack into the target slot (displacing the held stack into the inventory) and removes the entity
+    private static void moveToSlot(Player player, ItemEntity itemEntity, int target, boolean trace) {
+        ItemStack displacedStack = stackInSlot(player, target).copy();
+        ItemStack pickedUpStack = itemEntity.getItem();
+        // Fill the slot first so the displaced stack can't be put straight back into it
+        if (target == CompiledRuleIndex.OFFHAND) {
+            player.setItemInHand(InteractionHand.OFF_HAND, pickedUpStack.copy());
+        } else {
+            player.getInventory().setItem(target, pickedUpStack.copy());
+        }
+        pickedUpStack.setCount(0); // Remove the item from the pickup event stack
+        if (!displacedStack.isEmpty()) {
+            // outranksSlot made sure there is room; if the inventory changed since, drop the rest rather than lose it
+            if (!player.getInventory().add(displacedStack)) {
+                player.drop(displacedStack, false);
+            }
+            if (trace) {
+                Trace.log(Trace.Category.PICKUP, "Displaced item {} from slot {} for player: {}", displacedStack, target, player.getName().getString());
+            }
+        }
+
+        if (!itemEntity.isRemoved()) {
+            itemEntity.discard();
+        }
+        if (trace) {
+            Trace.log(Trace.Category.PICKUP, "Moved item to slot {} (-1 is the offhand) for player: {}", target, player.getName().getString());
         }
     }
 
@@ -202,197 +421,209 @@ public class ForgeEventHandler {
         if (stack.isEmpty()) {
             return false;
         }
+        CompiledRuleIndex rules = activeRules(player);
+        int rank = rank(player, rules, stack);
+        // Entries routed to a hotbar slot don't claim the offhand
+        return rank != CompiledRuleIndex.NO_MATCH && rules.targetSlot(rank) == CompiledRuleIndex.OFFHAND;
+    }
 
-        // --- Get Item Registry Name ---
-        ResourceLocation registryName = ForgeRegistries.ITEMS.getKey(stack.getItem());
-        if (registryName == null) {
-                AutoOffhand.LOGGER.warn("Item picked up without a registry name: {}", stack);
-                return false;
+    // Ranks a stack against the player's rules, tracing the evaluation if enabled
+    private static int rank(Player player, CompiledRuleIndex rules, ItemStack stack) {
+        // Decided once per call so sampling applies to the whole evaluation
+        boolean trace = Trace.enabled(Trace.Category.MATCH, player);
+        if (trace) {
+            Trace.log(Trace.Category.MATCH, "Checking if item should move to offhand: {} (registry name {}, display name '{}', NBT {})",
+                    stack, ForgeRegistries.ITEMS.getKey(stack.getItem()), stack.getDisplayName().getString(), stack.getTag());
+            Trace.log(Trace.Category.MATCH, "  Using {} rules.", rules.size());
         }
-        // ---
-
-        // --- DEBUG LOGGING ---
-        AutoOffhand.LOGGER.debug("Checking if item should move to offhand: {}", stack);
-        AutoOffhand.LOGGER.debug("  Item Registry Name: {}", registryName);
-        AutoOffhand.LOGGER.debug("  Item Display Name: {}", stack.getDisplayName().getString());
-        AutoOffhand.LOGGER.debug("  Item NBT: {}", stack.getTag());
+        return evaluateRank(rules, stack, trace);
+    }
 
-        // --- Determine which config list to use ---
-        List<String> effectiveConfigEntries = null;
-        boolean useServerList = true; // Default to server list
+    // Determines which compiled rules apply to the player right now
+    private static CompiledRuleIndex activeRules(Player player) {
+        CompiledRuleIndex rules;
 
         LazyOptional<IPlayerConfig> playerCapOpt = player.getCapability(PlayerConfigCapability.PLAYER_CONFIG_CAPABILITY);
 
         if (playerCapOpt.isPresent()) {
             IPlayerConfig playerConfig = playerCapOpt.orElseThrow(() -> new IllegalStateException("Capability present but could not be retrieved"));
-            if (playerConfig.isUsingServerConfig()) {
-                useServerList = true;
-                AutoOffhand.LOGGER.debug("  Player capability found. Player prefers server config.");
-            } else {
-                // Player prefers their own config, get it
-                effectiveConfigEntries = playerConfig.getConfigList();
-                useServerList = false;
-                AutoOffhand.LOGGER.debug("  Player capability found. Using player-specific list ({} entries).", effectiveConfigEntries.size());
-            }
+            // The capability caches the index selected for the player's current dimension and game mode (their own
+            // list merged with the global fallback and deny list, or the global list), so this is still a single lookup
+            rules = playerConfig.getActiveRules();
         } else {
             // Capability not present (shouldn't happen ideally), force server config
-            AutoOffhand.LOGGER.warn("  Player capability NOT found for player {}. Forcing use of global server config list.", player.getName().getString());
-            useServerList = true;
+            AutoOffhand.LOGGER.warn("Player capability NOT found for player {}. Forcing use of global server config list.", player.getName().getString());
+            GameType gameType = player instanceof ServerPlayer ? ((ServerPlayer) player).gameMode.getGameModeForPlayer() : null;
+            rules = ModConfig.SERVER.getGlobalRuleSet().select(player.getLevel().dimension(), gameType);
         }
 
-        if (useServerList) {
-            AutoOffhand.LOGGER.debug("  Using global server config list.");
-            List<? extends String> rawGlobalList = ModConfig.SERVER.globalAutoOffhandItems.get();
-            effectiveConfigEntries = new ArrayList<>(rawGlobalList); // Assign server list
-            AutoOffhand.LOGGER.debug("  Global Config List has {} entries.", effectiveConfigEntries.size());
-        }
+        // --- END Config List Determination ---
 
-        // If after all checks, the effective list is null or empty, nothing can match
-        if (effectiveConfigEntries == null || effectiveConfigEntries.isEmpty()) {
-            AutoOffhand.LOGGER.debug("  Effective config list is empty. No match possible.");
-            return false;
-        }
+        return rules;
+    }
 
-        // --- END Config List Determination ---
+    /**
+     * Decides whether a stack matches the given compiled rules, consulting the shared decision cache first.
+     * Package-private so the JMH benchmarks can drive the hot path without a live player.
+     */
+    static boolean evaluate(CompiledRuleIndex rules, ItemStack stack, boolean trace) {
+        return evaluateRank(rules, stack, trace) != CompiledRuleIndex.NO_MATCH;
+    }
 
-        // 1. Check the determined item list (Registry Names and NBT data)
-        AutoOffhand.LOGGER.debug("  Checking item against effective list...");
-        for (String entry : effectiveConfigEntries) { // Use the determined list
-            Object parsedEntry = ConfigItemUtils.parseConfigEntry(entry);
-            AutoOffhand.LOGGER.debug("    Parsing entry '{}': Result={}", entry, parsedEntry);
-
-            if (parsedEntry instanceof ResourceLocation) {
-                // Match against registry name
-                boolean match = registryName.equals(parsedEntry);
-                AutoOffhand.LOGGER.debug("      Comparing registry name {} == {}: {}", registryName, parsedEntry, match);
-                if (match) {
-                    AutoOffhand.LOGGER.debug("  MATCH FOUND (Registry Name): {} in effective list", parsedEntry);
-                    return true;
-                }
-            } else if (parsedEntry instanceof ItemStack) {
-                // Match against specific item stack (ignoring damage and count)
-                // Note: stacksMatchIgnoreDamageAndCount might need internal updates too
-                boolean match = ConfigItemUtils.stacksMatchIgnoreDamageAndCount((ItemStack) parsedEntry, stack);
-                AutoOffhand.LOGGER.debug("      Comparing item stack (ignore damage/count) {} == {}: {}", parsedEntry, stack, match);
-                if (match) {
-                    AutoOffhand.LOGGER.debug("  MATCH FOUND (ItemStack NBT): {} in effective list", parsedEntry);
-                    return true;
-                }
-            } else {
-                AutoOffhand.LOGGER.debug("      Ignoring invalid/unparsed entry: {}", entry);
+    /**
+     * Ranks a stack against the given compiled rules (see {@link CompiledRuleIndex#rank}), consulting the shared
+     * decision cache first.
+     */
+    static int evaluateRank(CompiledRuleIndex rules, ItemStack stack, boolean trace) {
+        // If after all checks, the effective rules are empty, nothing can match
+        if (rules.isEmpty()) {
+            return CompiledRuleIndex.NO_MATCH;
+        }
+
+        // 1. Rules that ignore NBT for this item answer with one lookup; fingerprinting a heavy tag
+        //    (shulker boxes, books) for the cache would cost more than the decision itself
+        Item item = stack.getItem();
+        if (!rules.dependsOnTag(item)) {
+            int rank = rules.rank(stack);
+            if (trace) {
+                Trace.log(Trace.Category.MATCH, "  Decided by item alone: rank={}", rank);
             }
-            // Ignore null parsedEntry (invalid config lines)
+            return rank;
         }
 
-        // Removed substring checks as they were removed from config
+        // 2. Reuse a previous decision for the same list content, item and NBT fingerprint
+        int fingerprint = ConfigItemUtils.nbtFingerprint(stack.getTag());
+        Integer cached = MatchDecisionCache.get(rules, item, fingerprint);
+        if (cached != null) {
+            if (trace) {
+                Trace.log(Trace.Category.MATCH, "  Cached decision (fingerprint {}): rank={}", fingerprint, cached);
+            }
+            return cached;
+        }
 
-        AutoOffhand.LOGGER.debug("  No match found in effective list for item {}. Returning false.", stack);
-        return false; // No criteria matched in the effective list
+        // 3. Check the item against the per-Item index (Registry Names and NBT data)
+        int rank = rules.rank(stack);
+        if (rules.isDecidedByFingerprint(item, fingerprint)) {
+            MatchDecisionCache.put(rules, item, fingerprint, rank);
+        }
+        if (trace) {
+            Trace.log(Trace.Category.MATCH, "  Evaluated {} compiled rules (fingerprint {}): rank={}", rules.size(), fingerprint, rank);
+        }
+        return rank;
     }
 
 
     // --- Returning Projectile Handling ---
 
     /**
-     * Detects when specific projectile entities (like Loyalty Tridents or Tetra items)
-     * are leaving the world, potentially returning to the player.
+     * Starts tracking returnable projectiles (like Loyalty Tridents or Tetra items) when they join a server world,
+     * whether freshly thrown or loaded with their chunk.
+     * Only projectiles that can come back are tracked: those with Loyalty, or owned by a player.
+     */
+    @SubscribeEvent
+    public static void onProjectileJoin(EntityJoinWorldEvent event) {
+        if (event.getWorld().isClientSide() || ReturnableProjectiles.isEmpty()) {
+            return;
+        }
+        Entity entity = event.getEntity();
+        // One identity lookup decides whether the type is returnable at all
+        Function<Entity, ItemStack> extractor = ReturnableProjectiles.extractor(entity.getType());
+        if (extractor == null) {
+            return;
+        }
+        boolean ownedByPlayer = entity instanceof Projectile && ((Projectile) entity).getOwner() instanceof Player;
+        if (ownedByPlayer || EnchantmentHelper.getLoyalty(extractor.apply(entity)) > 0) {
+            ReturnableProjectiles.track(entity);
+        }
+    }
+
+    /**
+     * Detects when a tracked projectile leaves the world because it returned to (or was picked up by) the player.
      * Schedules a check at the end of the tick to move the item if it lands in the main inventory.
+     * Chunk unloads, dimension changes, kills and despawns only stop the tracking.
      */
     @SubscribeEvent
     public static void onProjectileReturn(EntityLeaveWorldEvent event) {
-        // Only run on server
-        if (event.getWorld().isClientSide() || RETURNABLE_PROJECTILE_TYPES.isEmpty()) {
+        // Only run on server; nothing to do for the usual flood of unloads while no projectile is in flight
+        if (event.getWorld().isClientSide() || !ReturnableProjectiles.hasTracked()) {
             return;
         }
 
         Entity entity = event.getEntity();
-        EntityType<?> entityType = entity.getType();
-
-        // Check if the entity type is one we're tracking
-        if (!RETURNABLE_PROJECTILE_TYPES.contains(entityType)) {
+        if (!ReturnableProjectiles.untrack(entity)) {
+            return;
+        }
+        // A returning trident discards itself when the owner picks it up; unloaded entities come back with their chunk
+        // and are tracked again then
+        if (entity.getRemovalReason() != Entity.RemovalReason.DISCARDED) {
+            if (Trace.enabled(Trace.Category.PROJECTILE)) {
+                Trace.log(Trace.Category.PROJECTILE, "Tracked projectile {} left the world ({}), not a return.", entity.getStringUUID(), entity.getRemovalReason());
+            }
             return;
         }
 
         // --- Attempt to get the ItemStack ---
-        ItemStack representativeStack = ItemStack.EMPTY;
-        if (entity instanceof ThrownTrident) {
-            // Basic handling for Trident
-            ThrownTrident tridentEntity = (ThrownTrident) entity;
-            representativeStack = new ItemStack(Items.TRIDENT); // Start with base
-            CompoundTag tridentNBT = tridentEntity.saveWithoutId(new CompoundTag());
-            if (tridentNBT.contains("Trident", 10)) { // 10 = CompoundTag Type ID
-                ItemStack nbtStack = ItemStack.of(tridentNBT.getCompound("Trident"));
-                if (!nbtStack.isEmpty()) {
-                    representativeStack = nbtStack; // Use stack from NBT if available
-                }
-            }
-            // Optional: Check for Loyalty enchantment if needed for specific logic, but the primary goal is just to get the item back
-            // int loyaltyLevel = EnchantmentHelper.getItemEnchantmentLevel(Enchantments.LOYALTY, representativeStack);
-            // if (loyaltyLevel <= 0) return; // Example: Only handle Loyalty tridents
-
-        } else if (ForgeRegistries.ENTITIES.getKey(entityType) != null && ForgeRegistries.ENTITIES.getKey(entityType).equals(TETRA_THROWN_MODULAR_ITEM_ID)) {
-            // Handling for Tetra's thrown_modular_item
-            // We need to figure out how Tetra stores the item data.
-            // Approach 1: Check if it's a Projectile and try getPickupItem() via reflection (less ideal)
-            // Approach 2: Inspect NBT data
-            CompoundTag entityNBT = entity.saveWithoutId(new CompoundTag());
-            // AutoOffhand.LOGGER.info("NBT for Tetra entity {}: {}", entity.getStringUUID(), entityNBT.toString()); // Keep for debugging if needed, may change in the future
-            // *** NBT structure confirmed from logs ***
-            if (entityNBT.contains("stack", 10)) {
-                ItemStack nbtStack = ItemStack.of(entityNBT.getCompound("stack"));
-                if (!nbtStack.isEmpty()) {
-                    representativeStack = nbtStack;
-                    AutoOffhand.LOGGER.debug("Extracted ItemStack {} from Tetra entity NBT using 'stack' key.", representativeStack);
-                } else {
-                    AutoOffhand.LOGGER.warn("Found 'stack' NBT tag for Tetra entity, but failed to create ItemStack.");
-                }
-            } else {
-                AutoOffhand.LOGGER.warn("Could not find expected 'stack' NBT tag for Tetra entity {}. Cannot determine item to return.", entity.getStringUUID());
-                // Fallback or alternative checks could go here if needed
-                // For now, we can't proceed without the item stack.
-                return; // Exit if we can't get the stack
-            }
+        Function<Entity, ItemStack> extractor = ReturnableProjectiles.extractor(entity.getType());
+        if (extractor == null) {
+            return; // The type was dropped from the config while the projectile was in flight
         }
-        // Add more 'else if' blocks here for other supported entity types if necessary
+        ItemStack representativeStack = extractor.apply(entity);
 
         if (representativeStack.isEmpty()) {
-            AutoOffhand.LOGGER.debug("Could not determine representative ItemStack for returning entity {}. Aborting offhand check.", entity.getStringUUID());
+            if (Trace.enabled(Trace.Category.PROJECTILE)) {
+                Trace.log(Trace.Category.PROJECTILE, "Could not determine representative ItemStack for returning entity {}. Aborting offhand check.", entity.getStringUUID());
+            }
             return;
         }
 
         // --- Get Owner and Schedule Check ---
         Entity owner = null;
-        // Tridents store owner directly
-        if (entity instanceof ThrownTrident) {
-            owner = ((ThrownTrident) entity).getOwner();
-        }
-        // Other projectiles might use getOwner() if they extend Projectile
-        else if (entity instanceof Projectile) {
+        // Tridents and other projectiles extending Projectile store their owner
+        if (entity instanceof Projectile) {
             owner = ((Projectile) entity).getOwner();
         }
         // Add other owner-retrieval logic if needed for specific entities
 
         if (owner instanceof Player) {
             Player player = (Player) owner;
-            MinecraftServer server = player.getServer();
-            if (server != null && !player.isRemoved()) {
-                AutoOffhand.LOGGER.debug("Projectile returning to player {}. Scheduling inventory check for item {}.", player.getName().getString(), representativeStack);
-                final ItemStack finalRepresentativeStack = representativeStack.copy(); // Final copy for lambda
-                // Schedule task for end of tick
-                server.tell(new TickTask(server.getTickCount(), () -> {
-                    // Re-fetch player instance in case something changed
-                    Player taskPlayer = server.getPlayerList().getPlayer(player.getUUID());
-                    if (taskPlayer != null) {
-                        checkAndMoveSpecificInventoryItem(taskPlayer, finalRepresentativeStack);
-                    }
-                }));
+            // Despawns and loyalty tridents giving up on their owner are discarded too; only a pickup is a return
+            if (!isPickedUpBy(entity, player)) {
+                if (Trace.enabled(Trace.Category.PROJECTILE, player)) {
+                    Trace.log(Trace.Category.PROJECTILE, "Tracked projectile {} was discarded away from {}, not a return.", entity.getStringUUID(), player.getName().getString());
+                }
+                return;
+            }
+            if (Trace.enabled(Trace.Category.PROJECTILE, player)) {
+                Trace.log(Trace.Category.PROJECTILE, "Projectile returning to player {}. Queueing inventory check for item {}.", player.getName().getString(), representativeStack);
             }
+            // Checked at the end of the tick (see onServerTick), once per player and item however many return
+            DeferredOffhandChecks.enqueue(player, representativeStack);
         }
     }
 
     /**
-     * Checks the player's main inventory for a specific item that should be moved to an empty offhand.
-     * Called by the scheduled task after a potential Loyalty trident return.
+     * Checks whether a discarded projectile can have been picked up by its owner: the owner is alive, not a spectator,
+     * in the same level and within touching range, and arrows must allow the owner to pick them up.
+     */
+    private static boolean isPickedUpBy(Entity projectile, Player player) {
+        if (player.isRemoved() || !player.isAlive() || player.isSpectator() || player.level != projectile.level) {
+            return false;
+        }
+        if (projectile instanceof AbstractArrow) {
+            AbstractArrow.Pickup pickup = ((AbstractArrow) projectile).pickup;
+            if (pickup == AbstractArrow.Pickup.DISALLOWED
+                    || pickup == AbstractArrow.Pickup.CREATIVE_ONLY && !player.getAbilities().instabuild) {
+                return false;
+            }
+        }
+        return player.getBoundingBox().inflate(PICKUP_REACH, PICKUP_REACH / 2, PICKUP_REACH).intersects(projectile.getBoundingBox());
+    }
+
+    /**
+     * Moves a specific item from the player's main inventory to an empty offhand.
+     * Called from the deferred check queue after a potential Loyalty trident return.
+     * The match decision is made once for the returning item; the item is then taken from the slot it was
+     * just inserted into (see {@link InventoryWatcher}), falling back to a scan for the same item.
      * @param player The player whose inventory to check.
      * @param specificItemToMove The specific ItemStack (type and NBT match, count ignored) to look for.
      */
@@ -402,25 +633,47 @@ public class ForgeEventHandler {
             return;
         }
 
+        boolean trace = Trace.enabled(Trace.Category.PROJECTILE, player);
         // Check if offhand is empty
-        if (player.getItemInHand(InteractionHand.OFF_HAND).isEmpty()) {
-            AutoOffhand.LOGGER.debug("Player {} offhand is empty. Scanning inventory for items to move.", player.getName().getString());
-            AutoOffhand.LOGGER.debug("Player {} offhand is empty. Scanning inventory for specific item {} to move.", player.getName().getString(), specificItemToMove);
+        if (!player.getItemInHand(InteractionHand.OFF_HAND).isEmpty()) {
+            if (trace) {
+                Trace.log(Trace.Category.PROJECTILE, "Player {} offhand is not empty. Skipping inventory check.", player.getName().getString());
+            }
+            return;
+        }
+        // The slot holds the same item and NBT, so the returning stack's decision stands for it
+        if (!shouldMoveToOffhand(player, specificItemToMove)) {
+            if (trace) {
+                Trace.log(Trace.Category.PROJECTILE, "Returning item {} is not configured for the offhand of player {}.", specificItemToMove, player.getName().getString());
+            }
+            return;
+        }
+
+        Inventory inventory = player.getInventory();
+        int slot = InventoryWatcher.findRecent(player, specificItemToMove);
+        if (slot < 0) {
+            if (trace) {
+                Trace.log(Trace.Category.PROJECTILE, "Insertion slot of {} unknown for player {}. Scanning inventory.", specificItemToMove, player.getName().getString());
+            }
             // Iterate through main inventory slots (0-35)
-            for (int i = 0; i < player.getInventory().items.size(); ++i) {
-                ItemStack stackInSlot = player.getInventory().getItem(i);
-                // Check if the slot is not empty, if it matches the specific item we're looking for,
-                // AND if it's configured to be moved to the offhand.
-                if (!stackInSlot.isEmpty() && ItemStack.isSameItemSameTags(stackInSlot, specificItemToMove) && shouldMoveToOffhand(player, stackInSlot)) {
-                    AutoOffhand.LOGGER.debug("Found specific item in inventory slot {} for player {}. Moving to offhand.", i, player.getName().getString());
-                    player.setItemInHand(InteractionHand.OFF_HAND, stackInSlot.copy()); // Move a copy
-                    player.getInventory().setItem(i, ItemStack.EMPTY);
-                    return;
+            for (int i = 0; i < inventory.items.size(); ++i) {
+                if (ItemStack.isSameItemSameTags(inventory.getItem(i), specificItemToMove)) {
+                    slot = i;
+                    break;
                 }
             }
-            AutoOffhand.LOGGER.debug("Finished scanning inventory for player {}. No suitable items found to move.", player.getName().getString());
-        } else {
-            AutoOffhand.LOGGER.debug("Player {} offhand is not empty. Skipping inventory scan.", player.getName().getString());
         }
+        if (slot < 0) {
+            if (trace) {
+                Trace.log(Trace.Category.PROJECTILE, "Item {} not found in the inventory of player {}. Nothing to move.", specificItemToMove, player.getName().getString());
+            }
+            return;
+        }
+
+        if (trace) {
+            Trace.log(Trace.Category.PROJECTILE, "Found specific item in inventory slot {} for player {}. Moving to offhand.", slot, player.getName().getString());
+        }
+        player.setItemInHand(InteractionHand.OFF_HAND, inventory.getItem(slot).copy()); // Move a copy
+        inventory.setItem(slot, ItemStack.EMPTY);
     }
 }
@@ -0,0 +1,267 @@
+package com.thunderscore.autooffhand;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import com.thunderscore.autooffhand.config.CompiledRuleIndex;
+
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.player.Inventory;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.inventory.AbstractContainerMenu;
+import net.minecraft.world.inventory.ContainerListener;
+import net.minecraft.world.inventory.Slot;
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * Listens to a player's inventory menu and remembers the most recent insertions into main-inventory slots and
+ * onto the cursor: which slot (or the cursor) gained how many of which item, and on which player tick.
+ * A returning projectile's item is found in the slot it was inserted into instead of by scanning, and a stack
+ * leaving the offhand can be told apart from one used up by whether the player just gained it somewhere else.
+ * <p>
+ * Once auto-refill asks for it, the watcher also keeps an index of the main-inventory slots holding items
+ * routed to the offhand, with their ranks. It is built with one pass over the inventory when first used or
+ * when the player's rules change, then updated slot by slot as changes are reported, so finding the best
+ * refill never scans the inventory.
+ * <p>
+ * The menu reports changes when it is synchronised with the client, which the player's own tick does every
+ * tick while no other container is open; lookups force that synchronisation first so nothing changed
+ * earlier in the tick is missed.
+ * <p>
+ * Only touched from the server thread.
+ */
+public final class InventoryWatcher implements ContainerListener {
+
+    // Enough for a burst of inserts in one tick; older changes fall back to a scan
+    private static final int RECENT_SLOTS = 8;
+    // Slot index of insertions onto the cursor
+    private static final int CARRIED = -1;
+    // Insertions count as "just now" for this many player ticks: a click handled between ticks is reported
+    // one player tick before the equipment change it causes is detected
+    private static final int RECENT_TICKS = 1;
+
+    // Keyed by UUID so the map never holds a player instance itself; each player's watcher is replaced on
+    // respawn and removed when the old instance is cloned or the player logs out
+    private static final Map<UUID, InventoryWatcher> WATCHERS = new HashMap<>();
+
+    private final Inventory inventory;
+    // Last reported contents of each main-inventory slot and of the cursor, to turn reports into gains
+    private final ItemStack[] seen;
+    private ItemStack seenCarried;
+    // Ring of recent insertions, newest at head - 1: slot index (or CARRIED), reported stack, gained count, player tick
+    private final int[] recent = new int[RECENT_SLOTS];
+    private final ItemStack[] recentStacks = new ItemStack[RECENT_SLOTS];
+    private final int[] recentGains = new int[RECENT_SLOTS];
+    private final int[] recentTicks = new int[RECENT_SLOTS];
+    private int head = 0;
+    private int count = 0;
+
+    // Offhand-routed slots and their ranks, for the rules in indexedRules; null until auto-refill first asks
+    private CompiledRuleIndex indexedRules = null;
+    private final BitSet offhandSlots = new BitSet(Inventory.INVENTORY_SIZE);
+    private final int[] ranks = new int[Inventory.INVENTORY_SIZE];
+
+    private InventoryWatcher(Player player) {
+        this.inventory = player.getInventory();
+        this.seen = new ItemStack[this.inventory.items.size()];
+        for (int i = 0; i < this.seen.length; i++) {
+            this.seen[i] = this.inventory.getItem(i).copy();
+        }
+        this.seenCarried = player.containerMenu.getCarried().copy();
+    }
+
+    /**
+     * Starts watching a player's inventory. Called on login and respawn (which creates a new player instance).
+     */
+    static void attach(ServerPlayer player) {
+        InventoryWatcher previous = WATCHERS.get(player.getUUID());
+        if (previous != null) {
+            if (previous.inventory.player == player) {
+                return;
+            }
+            // A previous instance of the player that wasn't detached
+            previous.inventory.player.inventoryMenu.removeSlotListener(previous);
+        }
+        InventoryWatcher watcher = new InventoryWatcher(player);
+        WATCHERS.put(player.getUUID(), watcher);
+        player.inventoryMenu.addSlotListener(watcher);
+    }
+
+    /**
+     * Stops watching a player's inventory, e.g. on logout or when the instance is replaced after death.
+     * Does nothing if the player's watcher belongs to another instance.
+     */
+    static void detach(Player player) {
+        InventoryWatcher watcher = watcherOf(player);
+        if (watcher != null) {
+            WATCHERS.remove(player.getUUID());
+            player.inventoryMenu.removeSlotListener(watcher);
+        }
+    }
+
+    // The watcher of this player instance; null for other instances sharing the UUID (e.g. fake players)
+    private static InventoryWatcher watcherOf(Player player) {
+        InventoryWatcher watcher = WATCHERS.get(player.getUUID());
+        return watcher != null && watcher.inventory.player == player ? watcher : null;
+    }
+
+    /**
+     * Forgets every watcher, e.g. when the server stops.
+     */
+    static void clear() {
+        WATCHERS.clear();
+    }
+
+    /**
+     * Finds the main-inventory slot a stack was most recently inserted into.
+     *
+     * @param player The player whose inventory to look at.
+     * @param stack The item to look for (type and NBT; the count is ignored).
+     * @return The inventory slot index, or -1 if no recently changed slot holds the item (or the player isn't watched).
+     */
+    static int findRecent(Player player, ItemStack stack) {
+        InventoryWatcher watcher = watcherOf(player);
+        if (watcher == null) {
+            return -1;
+        }
+        // Report changes made since the player's last sync; the player's own tick then finds nothing new to send
+        player.inventoryMenu.broadcastChanges();
+        for (int i = 1; i <= watcher.count; i++) {
+            int slot = watcher.recent[(watcher.head - i + RECENT_SLOTS) % RECENT_SLOTS];
+            if (slot != CARRIED && ItemStack.isSameItemSameTags(watcher.inventory.getItem(slot), stack)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether a stack that just left the offhand was moved by the player rather than used up: in this
+     * player tick or the {@link #RECENT_TICKS} before it, the main inventory (main hand included) and the cursor
+     * gained at least as many of the item as the stack held. Items already held elsewhere don't count.
+     *
+     * @param player The player whose offhand was emptied.
+     * @param stack The stack that left the offhand (item, NBT and count).
+     */
+    static boolean movedIntoInventory(Player player, ItemStack stack) {
+        InventoryWatcher watcher = watcherOf(player);
+        if (watcher == null) {
+            return false;
+        }
+        player.inventoryMenu.broadcastChanges();
+        watcher.noteCarried();
+        int gained = 0;
+        for (int i = 1; i <= watcher.count; i++) {
+            int entry = (watcher.head - i + RECENT_SLOTS) % RECENT_SLOTS;
+            if (player.tickCount - watcher.recentTicks[entry] > RECENT_TICKS) {
+                break; // Older entries are older still
+            }
+            if (ItemStack.isSameItemSameTags(watcher.recentStacks[entry], stack)) {
+                gained += watcher.recentGains[entry];
+            }
+        }
+        return gained >= stack.getCount();
+    }
+
+    /**
+     * Finds the main-inventory slot holding the best-ranked item routed to the offhand.
+     *
+     * @param player The player whose inventory to look at.
+     * @param rules The player's active rules.
+     * @return The inventory slot index, or -1 if none holds such an item (or the player isn't watched).
+     */
+    static int bestOffhandSlot(Player player, CompiledRuleIndex rules) {
+        InventoryWatcher watcher = watcherOf(player);
+        if (watcher == null) {
+            return -1;
+        }
+        player.inventoryMenu.broadcastChanges();
+        if (watcher.indexedRules != rules) {
+            // First use, or the list, scope or tags changed: rank every slot once against the new rules
+            watcher.indexedRules = rules;
+            for (int i = 0; i < watcher.inventory.items.size(); i++) {
+                watcher.index(i, watcher.inventory.getItem(i));
+            }
+        }
+        int bestSlot = -1;
+        int bestRank = CompiledRuleIndex.NO_MATCH;
+        for (int i = watcher.offhandSlots.nextSetBit(0); i >= 0; i = watcher.offhandSlots.nextSetBit(i + 1)) {
+            if (watcher.ranks[i] < bestRank) {
+                bestRank = watcher.ranks[i];
+                bestSlot = i;
+            }
+        }
+        return bestSlot;
+    }
+
+    // Updates one slot's entry in the match index
+    private void index(int slot, ItemStack stack) {
+        int rank = stack.isEmpty() ? CompiledRuleIndex.NO_MATCH : ForgeEventHandler.evaluateRank(this.indexedRules, stack, false);
+        if (rank != CompiledRuleIndex.NO_MATCH && this.indexedRules.targetSlot(rank) == CompiledRuleIndex.OFFHAND) {
+            this.offhandSlots.set(slot);
+            this.ranks[slot] = rank;
+        } else {
+            this.offhandSlots.clear(slot);
+        }
+    }
+
+    // Remembers an insertion into a slot or onto the cursor
+    private void remember(int slot, ItemStack stack, int gained) {
+        this.recent[this.head] = slot;
+        this.recentStacks[this.head] = stack;
+        this.recentGains[this.head] = gained;
+        this.recentTicks[this.head] = this.inventory.player.tickCount;
+        this.head = (this.head + 1) % RECENT_SLOTS;
+        if (this.count < RECENT_SLOTS) {
+            this.count++;
+        }
+    }
+
+    // Picks up cursor changes; clicks change the cursor and report the clicked slots in the same synchronisation
+    private void noteCarried() {
+        ItemStack carried = this.inventory.player.containerMenu.getCarried();
+        if (ItemStack.matches(this.seenCarried, carried)) {
+            return;
+        }
+        int gained = gained(this.seenCarried, carried);
+        this.seenCarried = carried.copy();
+        if (gained > 0) {
+            remember(CARRIED, this.seenCarried, gained);
+        }
+    }
+
+    // How many items a slot gained going from one reported stack to the next
+    private static int gained(ItemStack before, ItemStack after) {
+        if (after.isEmpty()) {
+            return 0;
+        }
+        return ItemStack.isSameItemSameTags(before, after) ? after.getCount() - before.getCount() : after.getCount();
+    }
+
+    @Override
+    public void slotChanged(AbstractContainerMenu menu, int menuSlot, ItemStack stack) {
+        noteCarried();
+        Slot slot = menu.getSlot(menuSlot);
+        // Skip the crafting grid, armor and offhand slots
+        if (slot.container != this.inventory || slot.getContainerSlot() >= this.inventory.items.size()) {
+            return;
+        }
+        int index = slot.getContainerSlot();
+        if (this.indexedRules != null) {
+            index(index, stack);
+        }
+        // The menu reports a fresh copy that it never modifies, so it is kept as is
+        int gained = gained(this.seen[index], stack);
+        this.seen[index] = stack;
+        if (gained > 0) {
+            remember(index, stack, gained); // Only insertions are remembered as recent
+        }
+    }
+
+    @Override
+    public void dataChanged(AbstractContainerMenu menu, int id, int value) {
+        // The inventory menu has no data slots
+    }
+}
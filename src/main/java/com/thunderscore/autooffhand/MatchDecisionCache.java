@@ -0,0 +1,82 @@
+package com.thunderscore.autooffhand;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.thunderscore.autooffhand.config.CompiledRuleIndex;
+
+import net.minecraft.world.item.Item;
+
+/**
+ * Bounded, evicting cache of match decisions (the matching rule's rank, see {@link CompiledRuleIndex#rank}) shared by every player.
+ * The key is the effective compiled index (by identity) plus the item identity and NBT fingerprint.
+ * Compiled indexes are interned by content, so players with identical lists hit the same entries.
+ * A changed list compiles to a different index, so its old entries can never answer for it and simply age out;
+ * the cache is only cleared when an existing index's meaning changes (tag reloads, global or deny list rebuilds).
+ */
+public final class MatchDecisionCache {
+
+    private static final int MAX_ENTRIES = 4096;
+
+    // Access-ordered so the least recently used decisions are evicted first
+    private static final Map<Key, Integer> DECISIONS = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Integer> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private MatchDecisionCache() {} // Prevent instantiation
+
+    /**
+     * @return The cached rank, or null if there is none.
+     */
+    static Integer get(CompiledRuleIndex rules, Item item, int fingerprint) {
+        synchronized (DECISIONS) {
+            return DECISIONS.get(new Key(rules, item, fingerprint));
+        }
+    }
+
+    static void put(CompiledRuleIndex rules, Item item, int fingerprint, int rank) {
+        synchronized (DECISIONS) {
+            DECISIONS.put(new Key(rules, item, fingerprint), rank);
+        }
+    }
+
+    /**
+     * Drops every cached decision. Called when tags reload or the global or deny list is rebuilt.
+     */
+    public static void invalidate() {
+        synchronized (DECISIONS) {
+            DECISIONS.clear();
+        }
+    }
+
+    private static final class Key {
+        private final CompiledRuleIndex rules;
+        private final Item item;
+        private final int fingerprint;
+        private final int hash;
+
+        Key(CompiledRuleIndex rules, Item item, int fingerprint) {
+            this.rules = rules;
+            this.item = item;
+            this.fingerprint = fingerprint;
+            this.hash = 31 * (31 * rules.contentHash() + System.identityHashCode(item)) + fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            // Interned indexes make identity equivalent to equal content
+            return rules == other.rules && item == other.item && fingerprint == other.fingerprint;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
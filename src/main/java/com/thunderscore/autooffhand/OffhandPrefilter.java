@@ -0,0 +1,118 @@
+package com.thunderscore.autooffhand;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import com.thunderscore.autooffhand.capability.IPlayerConfig;
+import com.thunderscore.autooffhand.config.CompiledRuleIndex;
+import com.thunderscore.autooffhand.config.ModConfig;
+
+import net.minecraft.world.item.Item;
+
+/**
+ * Fast-path filter for the pickup handler: a bitset indexed by numeric item id holding the union of items
+ * that appear in any active config (the global list plus every live server-side player's own list,
+ * fake players included).
+ * Items outside the union are rejected with one bit read, before any capability lookup.
+ * Name rules can match any item type, so while one is active the filter lets everything through.
+ * It also records whether any active list routes items to the hotbar, so a pickup can be rejected on an occupied
+ * offhand without resolving the player's rules.
+ * <p>
+ * The set is a conservative superset: list changes and logins/logouts only mark it dirty,
+ * and it is rebuilt lazily on the server thread at the next pickup.
+ */
+public final class OffhandPrefilter {
+
+    // Replaced wholesale on rebuild, never mutated after publishing
+    private static volatile BitSet activeItemIds = new BitSet();
+    // Set when an active list has name rules; published before activeItemIds
+    private static volatile boolean matchAll = false;
+    // Set when an active list has "@<slot>:" hotbar routes; published before activeItemIds
+    private static volatile boolean hotbarRoutes = false;
+    private static volatile boolean dirty = true;
+    // Capabilities of server-side players, held weakly so players that are gone simply drop out
+    private static final Set<IPlayerConfig> LIVE_CONFIGS = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private OffhandPrefilter() {} // Prevent instantiation
+
+    /**
+     * Flags the union as stale. Safe to call from any thread.
+     */
+    public static void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Adds a server-side player's capability to the union. Called when the capability is attached.
+     */
+    public static void track(IPlayerConfig config) {
+        synchronized (LIVE_CONFIGS) {
+            LIVE_CONFIGS.add(config);
+        }
+        dirty = true;
+    }
+
+    /**
+     * Removes a player's capability from the union, e.g. on logout.
+     */
+    public static void untrack(IPlayerConfig config) {
+        synchronized (LIVE_CONFIGS) {
+            LIVE_CONFIGS.remove(config);
+        }
+        dirty = true;
+    }
+
+    /**
+     * Checks whether any active config could match the item.
+     * Must be called on the server thread.
+     *
+     * @param item The item type being picked up.
+     * @return false if no active config mentions the item; true if it might match.
+     */
+    static boolean mayMatch(Item item) {
+        if (dirty) {
+            rebuild();
+        }
+        return matchAll || activeItemIds.get(Item.getId(item));
+    }
+
+    /**
+     * Checks whether any active config routes items to a hotbar slot, i.e. whether a pickup may have a target
+     * other than the offhand. Must be called on the server thread.
+     */
+    static boolean mayRouteToHotbar() {
+        if (dirty) {
+            rebuild();
+        }
+        return hotbarRoutes;
+    }
+
+    private static void rebuild() {
+        // Clear first so a markDirty() racing with the rebuild is not lost
+        dirty = false;
+        BitSet itemIds = new BitSet();
+        // The global list is always included: players without the mod and without a capability fall back to it
+        CompiledRuleIndex globalRules = ModConfig.SERVER.getGlobalRules();
+        globalRules.addItemIds(itemIds);
+        boolean anyItemType = globalRules.matchesAnyItemType();
+        boolean anyHotbarRoute = globalRules.hasHotbarRoutes();
+
+        synchronized (LIVE_CONFIGS) {
+            for (IPlayerConfig config : LIVE_CONFIGS) {
+                if (!config.isUsingServerConfig()) {
+                    CompiledRuleIndex rules = config.getCompiledRules();
+                    rules.addItemIds(itemIds);
+                    anyItemType |= rules.matchesAnyItemType();
+                    anyHotbarRoute |= rules.hasHotbarRoutes();
+                }
+            }
+        }
+
+        matchAll = anyItemType;
+        hotbarRoutes = anyHotbarRoute;
+        activeItemIds = itemIds;
+        AutoOffhand.LOGGER.debug("Rebuilt offhand prefilter ({} active item types, matchAll={}).", itemIds.cardinality(), anyItemType);
+    }
+}
@@ -0,0 +1,90 @@
+package com.thunderscore.autooffhand;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.thunderscore.autooffhand.config.CompiledRuleIndex;
+
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.entity.player.Player;
+
+/**
+ * Per-tick arbitration of offhand pickups (opt-in, see ModConfig.ServerConfig#batchPickupsPerTick).
+ * During a tick only each player's best-ranked matching pickup per target slot is held back on the ground; every other pickup
+ * proceeds into the inventory as usual. At the end of the tick the held-back candidate is placed once, so the
+ * result no longer depends on the order the pickup events fired in.
+ * <p>
+ * Only touched from the server thread, like the pickup events that feed it.
+ */
+public final class PickupBatcher {
+
+    // Best candidate so far this tick per player and target slot (offhand first, then the hotbar); cleared on every drain
+    private static final Map<Player, Candidate[]> CANDIDATES = new IdentityHashMap<>();
+
+    private PickupBatcher() {} // Prevent instantiation
+
+    /**
+     * Offers a matching pickup as the player's candidate for this tick.
+     *
+     * @param player The player picking the item up.
+     * @param itemEntity The item on the ground.
+     * @param rank The stack's rank in the player's rules (lower is better).
+     * @param target The slot the stack is routed to (see {@link CompiledRuleIndex#targetSlot}).
+     * @return true if it is now the best candidate and its pickup must be held back; false if an equal or
+     *         better candidate was already offered this tick and the pickup can proceed normally.
+     */
+    static boolean offer(Player player, ItemEntity itemEntity, int rank, int target) {
+        Candidate[] byTarget = CANDIDATES.computeIfAbsent(player, key -> new Candidate[CompiledRuleIndex.HOTBAR_SIZE + 1]);
+        int slot = target - CompiledRuleIndex.OFFHAND;
+        Candidate current = byTarget[slot];
+        if (current != null && current.rank <= rank) {
+            return false;
+        }
+        // The previous candidate stays on the ground and is picked up normally on a later tick
+        byTarget[slot] = new Candidate(itemEntity, rank);
+        return true;
+    }
+
+    /**
+     * Hands every player's candidate to the resolver and forgets them. Called once at the end of each server tick.
+     */
+    static void drain(Resolver resolver) {
+        if (CANDIDATES.isEmpty()) {
+            return;
+        }
+        // Copied first so the resolver may cause further pickups without touching the map being iterated
+        List<Map.Entry<Player, Candidate[]>> batch = new ArrayList<>(CANDIDATES.entrySet());
+        CANDIDATES.clear();
+        for (Map.Entry<Player, Candidate[]> entry : batch) {
+            for (Candidate candidate : entry.getValue()) {
+                if (candidate != null) {
+                    resolver.resolve(entry.getKey(), candidate.itemEntity);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops all pending candidates, e.g. when the server stops.
+     */
+    static void clear() {
+        CANDIDATES.clear();
+    }
+
+    @FunctionalInterface
+    interface Resolver {
+        void resolve(Player player, ItemEntity itemEntity);
+    }
+
+    private static final class Candidate {
+        private final ItemEntity itemEntity;
+        private final int rank;
+
+        Candidate(ItemEntity itemEntity, int rank) {
+            this.itemEntity = itemEntity;
+            this.rank = rank;
+        }
+    }
+}
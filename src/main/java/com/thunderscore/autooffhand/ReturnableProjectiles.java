@@ -0,0 +1,235 @@
+package com.thunderscore.autooffhand;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.entity.projectile.AbstractArrow;
+import net.minecraft.world.entity.projectile.ItemSupplier;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.fml.InterModComms;
+import net.minecraftforge.fml.ModList;
+import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
+import net.minecraftforge.fml.event.lifecycle.InterModProcessEvent;
+import net.minecraftforge.fml.util.ObfuscationReflectionHelper;
+import net.minecraftforge.registries.ForgeRegistries;
+
+/**
+ * Registry of projectile entity types that return to their owner (Loyalty tridents, Tetra's thrown items, ...)
+ * and how to read the returning item from each.
+ * Extractors read the item straight from the entity instead of serialising it to NBT, and the returning
+ * entity's extractor is found with a single identity-map lookup on its type.
+ * <p>
+ * Types come from three sources:
+ * <ul>
+ * <li>built-ins, registered during common setup (the vanilla trident, and Tetra's thrown item when Tetra is loaded);</li>
+ * <li>IMC from other mods: method {@value #IMC_REGISTER}, with an {@link EntityType}, a {@link ResourceLocation} or an
+ *     entity id String (read with {@link #defaultExtractor}), or a {@code Map.Entry<EntityType<?>, Function<Entity, ItemStack>>}
+ *     carrying a custom extractor;</li>
+ * <li>the server config's returnableProjectileTypes list (read with {@link #defaultExtractor}).</li>
+ * </ul>
+ * Live projectiles that may come back (see ForgeEventHandler#onProjectileJoin) are tracked here too, so entities
+ * leaving the world cost nothing while none is in flight.
+ */
+public final class ReturnableProjectiles {
+
+    public static final String IMC_REGISTER = "register_returnable_projectile";
+
+    private static final ResourceLocation TETRA_THROWN_MODULAR_ITEM_ID = new ResourceLocation("tetra", "thrown_modular_item");
+
+    // AbstractArrow#getPickupItem is protected; resolved once through its SRG name so it works outside dev too
+    private static final MethodHandle GET_PICKUP_ITEM = findGetPickupItem();
+
+    // Built-in and IMC registrations; only written during mod loading
+    private static final Map<EntityType<?>, Function<Entity, ItemStack>> REGISTERED = new IdentityHashMap<>();
+    // REGISTERED plus the server config's types; replaced wholesale, never mutated after publishing
+    private static volatile Map<EntityType<?>, Function<Entity, ItemStack>> active = Collections.emptyMap();
+    // Last config list applied, so registrations arriving later can be merged with it
+    private static List<? extends String> configTypes = List.of();
+
+    // Projectiles in flight that may return, held weakly in case their leave event never fires; server thread only
+    private static final Set<Entity> TRACKED = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private ReturnableProjectiles() {} // Prevent instantiation
+
+    /**
+     * Registers the built-in types. Called from FMLCommonSetupEvent.
+     */
+    public static void registerBuiltIns(FMLCommonSetupEvent event) {
+        event.enqueueWork(() -> { // Use enqueueWork for registry access safety
+            register(EntityType.TRIDENT, ReturnableProjectiles::defaultExtractor);
+            AutoOffhand.LOGGER.debug("Added TRIDENT to returnable projectile types.");
+
+            // Check if Tetra mod is loaded
+            if (ModList.get().isLoaded("tetra")) {
+                EntityType<?> tetraItemType = ForgeRegistries.ENTITIES.getValue(TETRA_THROWN_MODULAR_ITEM_ID); // Use ENTITIES registry
+                if (tetraItemType != null && tetraItemType != EntityType.PIG) { // Check it's not the default fallback
+                    // Tetra's thrown item is an AbstractArrow whose pickup item is the thrown stack
+                    register(tetraItemType, ReturnableProjectiles::defaultExtractor);
+                    AutoOffhand.LOGGER.info("Tetra mod detected. Added {} to returnable projectile types.", TETRA_THROWN_MODULAR_ITEM_ID);
+                } else {
+                    AutoOffhand.LOGGER.warn("Tetra mod is loaded, but its entity type '{}' could not be found in the registry.", TETRA_THROWN_MODULAR_ITEM_ID);
+                }
+            } else {
+                AutoOffhand.LOGGER.debug("Tetra mod not detected. Skipping its returnable projectile type.");
+            }
+        });
+    }
+
+    /**
+     * Registers the types other mods sent over IMC. Called from InterModProcessEvent.
+     */
+    @SuppressWarnings("unchecked")
+    public static void processIMC(InterModProcessEvent event) {
+        InterModComms.getMessages(AutoOffhand.MOD_ID, IMC_REGISTER::equals).forEach(message -> {
+            Object payload = message.messageSupplier().get();
+            EntityType<?> type = null;
+            Function<Entity, ItemStack> extractor = ReturnableProjectiles::defaultExtractor;
+            if (payload instanceof Map.Entry) {
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) payload;
+                if (entry.getKey() instanceof EntityType && entry.getValue() instanceof Function) {
+                    type = (EntityType<?>) entry.getKey();
+                    extractor = (Function<Entity, ItemStack>) entry.getValue();
+                }
+            } else {
+                type = resolveType(payload);
+            }
+            if (type == null) {
+                AutoOffhand.LOGGER.warn("Ignoring invalid returnable projectile IMC from {}: {}", message.senderModId(), payload);
+                return;
+            }
+            register(type, extractor);
+            AutoOffhand.LOGGER.info("Added {} to returnable projectile types (IMC from {}).", ForgeRegistries.ENTITIES.getKey(type), message.senderModId());
+        });
+    }
+
+    /**
+     * Applies the server config's extra types. Called when the server config is loaded or reloaded.
+     */
+    public static synchronized void applyConfig(List<? extends String> typeIds) {
+        configTypes = List.copyOf(typeIds);
+        rebuild();
+    }
+
+    /**
+     * Gets the extractor for a projectile type.
+     *
+     * @param type The type of the entity leaving the world.
+     * @return The extractor, or null if the type is not a returnable projectile.
+     */
+    public static Function<Entity, ItemStack> extractor(EntityType<?> type) {
+        return active.get(type);
+    }
+
+    /**
+     * @return true if no type is registered, so leaving entities need no further look.
+     */
+    public static boolean isEmpty() {
+        return active.isEmpty();
+    }
+
+    /**
+     * Starts tracking a projectile that joined a server world. Server thread only.
+     */
+    public static void track(Entity entity) {
+        TRACKED.add(entity);
+    }
+
+    /**
+     * Stops tracking a projectile. Server thread only.
+     *
+     * @return true if the entity was tracked.
+     */
+    public static boolean untrack(Entity entity) {
+        return TRACKED.remove(entity);
+    }
+
+    /**
+     * @return true if any tracked projectile is in flight. Server thread only.
+     */
+    public static boolean hasTracked() {
+        return !TRACKED.isEmpty();
+    }
+
+    /**
+     * Forgets every tracked projectile, e.g. when the server stops.
+     */
+    public static void clearTracked() {
+        TRACKED.clear();
+    }
+
+    /**
+     * Reads the returning item of an AbstractArrow (its pickup item, e.g. the trident stack) or of an
+     * {@link ItemSupplier} projectile, without serialising the entity.
+     *
+     * @return A copy of the item, or {@link ItemStack#EMPTY} if the entity exposes none.
+     */
+    public static ItemStack defaultExtractor(Entity entity) {
+        if (entity instanceof AbstractArrow && GET_PICKUP_ITEM != null) {
+            try {
+                ItemStack stack = (ItemStack) GET_PICKUP_ITEM.invokeExact((AbstractArrow) entity);
+                return stack != null ? stack : ItemStack.EMPTY;
+            } catch (Throwable t) {
+                AutoOffhand.LOGGER.warn("Failed to read the pickup item of returning entity {}.", entity.getStringUUID(), t);
+                return ItemStack.EMPTY;
+            }
+        }
+        if (entity instanceof ItemSupplier) {
+            return ((ItemSupplier) entity).getItem().copy();
+        }
+        return ItemStack.EMPTY;
+    }
+
+    private static synchronized void register(EntityType<?> type, Function<Entity, ItemStack> extractor) {
+        REGISTERED.put(type, extractor);
+        rebuild();
+    }
+
+    private static void rebuild() {
+        Map<EntityType<?>, Function<Entity, ItemStack>> merged = new IdentityHashMap<>();
+        for (String id : configTypes) {
+            EntityType<?> type = resolveType(id);
+            if (type != null) {
+                merged.put(type, ReturnableProjectiles::defaultExtractor);
+            } else {
+                AutoOffhand.LOGGER.warn("Unknown entity type in returnableProjectileTypes: {}", id);
+            }
+        }
+        // Registered extractors win over the generic one for the same type
+        merged.putAll(REGISTERED);
+        active = merged;
+    }
+
+    private static EntityType<?> resolveType(Object payload) {
+        if (payload instanceof EntityType) {
+            return (EntityType<?>) payload;
+        }
+        ResourceLocation id = payload instanceof ResourceLocation ? (ResourceLocation) payload
+                : payload instanceof String ? ResourceLocation.tryParse((String) payload) : null;
+        if (id == null || !ForgeRegistries.ENTITIES.containsKey(id)) {
+            return null;
+        }
+        return ForgeRegistries.ENTITIES.getValue(id);
+    }
+
+    private static MethodHandle findGetPickupItem() {
+        try {
+            Method method = ObfuscationReflectionHelper.findMethod(AbstractArrow.class, "m_7941_");
+            return MethodHandles.lookup().unreflect(method).asType(MethodType.methodType(ItemStack.class, AbstractArrow.class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AutoOffhand.LOGGER.error("Could not access AbstractArrow#getPickupItem; returning projectiles will not be handled.", e);
+            return null;
+        }
+    }
+}
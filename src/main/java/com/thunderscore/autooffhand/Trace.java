@@ -0,0 +1,110 @@
+package com.thunderscore.autooffhand;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import net.minecraft.world.entity.player.Player;
+
+/**
+ * Hot-path tracing for AutoOffhand that costs one volatile read when disabled.
+ * Callers guard every trace with {@link #enabled}, so arguments are only built (and turned into strings)
+ * when the category is switched on:
+ * <pre>
+ * if (Trace.enabled(Trace.Category.PICKUP, player)) {
+ *     Trace.log(Trace.Category.PICKUP, "Picked up {}", stack);
+ * }
+ * </pre>
+ * Categories, player targeting and sampling come from the "tracing" section of the server config.
+ */
+public final class Trace {
+    private static final Logger LOGGER = LogManager.getLogger("AutoOffhand/Trace");
+
+    public enum Category {
+        PICKUP,     // Pickup handler decisions
+        MATCH,      // Rule evaluation inside shouldMoveToOffhand
+        PROJECTILE, // Returning projectile handling
+        NETWORK,    // Packet encode/decode/handle
+        REFILL;     // Offhand auto-refill
+
+        private final int bit = 1 << ordinal();
+    }
+
+    // Bit per enabled category; 0 means tracing is fully off
+    private static volatile int enabledMask = 0;
+    // Lower-cased player names or UUID strings to trace; empty traces every player
+    private static volatile Set<String> targetPlayers = Set.of();
+    // Log one in every sampleRate events of a category
+    private static volatile int sampleRate = 1;
+    private static final AtomicIntegerArray SAMPLE_COUNTERS = new AtomicIntegerArray(Category.values().length);
+
+    private Trace() {} // Prevent instantiation
+
+    /**
+     * Cheap check for events that are not tied to a player (e.g. packet codecs).
+     */
+    public static boolean enabled(Category category) {
+        return (enabledMask & category.bit) != 0 && sample(category);
+    }
+
+    /**
+     * Cheap check for a player-specific event. Also applies player targeting and sampling.
+     */
+    public static boolean enabled(Category category, Player player) {
+        if ((enabledMask & category.bit) == 0) {
+            return false;
+        }
+        Set<String> targets = targetPlayers;
+        if (!targets.isEmpty()
+                && !targets.contains(player.getGameProfile().getName().toLowerCase(Locale.ROOT))
+                && !targets.contains(player.getStringUUID())) {
+            return false;
+        }
+        return sample(category);
+    }
+
+    /**
+     * Writes a trace line. Only call this behind an {@link #enabled} check.
+     */
+    public static void log(Category category, String message, Object... args) {
+        LOGGER.info("[" + category + "] " + message, args);
+    }
+
+    /**
+     * Applies the tracing settings from the server config.
+     */
+    public static void configure(List<? extends String> categories, List<? extends String> players, int rate) {
+        int mask = 0;
+        for (String name : categories) {
+            if ("all".equalsIgnoreCase(name)) {
+                mask = ~0;
+                continue;
+            }
+            try {
+                mask |= Category.valueOf(name.toUpperCase(Locale.ROOT)).bit;
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Unknown trace category in config: {}", name);
+            }
+        }
+        Set<String> targets = new HashSet<>();
+        for (String player : players) {
+            targets.add(player.toLowerCase(Locale.ROOT));
+        }
+        targetPlayers = Set.copyOf(targets);
+        sampleRate = Math.max(1, rate);
+        enabledMask = mask; // Publish last so enabled categories see the new targets and rate
+        if (mask != 0) {
+            LOGGER.info("AutoOffhand tracing enabled: categories={}, players={}, sampleRate={}", categories, players, sampleRate);
+        }
+    }
+
+    private static boolean sample(Category category) {
+        int rate = sampleRate;
+        return rate == 1 || Math.floorMod(SAMPLE_COUNTERS.getAndIncrement(category.ordinal()), rate) == 0;
+    }
+}
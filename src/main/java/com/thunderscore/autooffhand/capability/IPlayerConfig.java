@@ -2,7 +2,12 @@ package com.thunderscore.autooffhand.capability;
 
 import java.util.List;
 
+import com.thunderscore.autooffhand.config.CompiledRuleIndex;
+
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.GameType;
+import net.minecraft.world.level.Level;
 import net.minecraftforge.common.util.INBTSerializable;
 
 /**
@@ -26,6 +31,35 @@ public interface IPlayerConfig extends INBTSerializable<CompoundTag> {
      */
     void setConfigList(List<String> configList);
 
+    /**
+     * Gets the compiled, immutable matcher for every entry of the player's config list (plus the global
+     * entries in layered mode), ignoring scopes and the deny layer. This is a superset of what the player can
+     * match anywhere and is meant for the prefilter; pickups use {@link #getActiveRules()}.
+     * It is built on first use and only rebuilt after setConfigList or deserializeNBT changes the data,
+     * or when a shared layer or the item tags change.
+     *
+     * @return The unscoped rule index for the player.
+     */
+    CompiledRuleIndex getCompiledRules();
+
+    /**
+     * Records the player's current dimension and game mode, which select the scoped rules that apply.
+     *
+     * @param dimension The player's dimension, or null if unknown.
+     * @param gameType The player's game mode, or null if unknown.
+     */
+    void setScope(ResourceKey<Level> dimension, GameType gameType);
+
+    /**
+     * Gets the merged index for the player's current scope: their own list (or the global list when using the
+     * server config), filtered to the entries scoped to the current dimension and game mode, with the deny layer.
+     * The selection is cached and only redone when the scope or the underlying rules change,
+     * so repeated calls on the pickup path do not allocate or parse anything.
+     *
+     * @return The rule index to match pickups against.
+     */
+    CompiledRuleIndex getActiveRules();
+
     /**
      * Checks if the player is currently set to use the server's default configuration.
      *
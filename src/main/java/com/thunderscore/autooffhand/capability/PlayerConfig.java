@@ -4,11 +4,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.thunderscore.autooffhand.AutoOffhand;
+import com.thunderscore.autooffhand.OffhandPrefilter;
+import com.thunderscore.autooffhand.config.CompiledRuleIndex;
+import com.thunderscore.autooffhand.config.ModConfig;
+import com.thunderscore.autooffhand.config.ScopedRuleSet;
 
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.StringTag;
 import net.minecraft.nbt.Tag;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.GameType;
+import net.minecraft.world.level.Level;
 
 /**
  * Default implementation of the IPlayerConfig capability.
@@ -18,6 +25,16 @@ public class PlayerConfig implements IPlayerConfig {
     private List<String> configList = new ArrayList<>();
     // Default to using player config if available
     private boolean useServerConfig = false;
+    // Compiled form of configList merged with the server's shared layers, built lazily; null means it must be (re)built
+    private ScopedRuleSet compiledRules = null;
+    // ModConfig layer version the compiled set was merged against
+    private int compiledLayerVersion = -1;
+    // The player's current dimension and game mode, kept up to date by ForgeEventHandler; null until known
+    private ResourceKey<Level> scopeDimension = null;
+    private GameType scopeGameType = null;
+    // Index selected for the current scope, and the rule set it was selected from; re-selected when either changes
+    private CompiledRuleIndex activeRules = null;
+    private ScopedRuleSet activeSource = null;
 
     private static final String NBT_KEY_CONFIG_LIST = "AutoOffhandConfigList";
     private static final String NBT_KEY_USE_SERVER_CONFIG = "AutoOffhandUseServerConfig";
@@ -32,9 +49,47 @@ public class PlayerConfig implements IPlayerConfig {
     public void setConfigList(List<String> configList) {
         // Store a defensive copy
         this.configList = new ArrayList<>(configList != null ? configList : new ArrayList<>());
+        this.compiledRules = null; // Rebuild on next use
+        OffhandPrefilter.markDirty();
         AutoOffhand.LOGGER.debug("PlayerConfig capability list set to: {}", this.configList);
     }
 
+    private ScopedRuleSet getRuleSet() {
+        int layerVersion = ModConfig.SERVER.getLayerVersion();
+        // Rebuild when the list changed, tags were reloaded, or the global/deny layers changed
+        if (this.compiledRules == null || this.compiledRules.isStale() || this.compiledLayerVersion != layerVersion) {
+            // Compile lazily so the registry lookups happen on the server thread, not during NBT loading
+            this.compiledRules = ModConfig.SERVER.buildPlayerRuleSet(this.configList);
+            this.compiledLayerVersion = layerVersion;
+            AutoOffhand.LOGGER.debug("Compiled PlayerConfig capability list into {} rules.", this.compiledRules.union().size());
+        }
+        return this.compiledRules;
+    }
+
+    @Override
+    public CompiledRuleIndex getCompiledRules() {
+        return getRuleSet().union();
+    }
+
+    @Override
+    public void setScope(ResourceKey<Level> dimension, GameType gameType) {
+        if (dimension != this.scopeDimension || gameType != this.scopeGameType) {
+            this.scopeDimension = dimension;
+            this.scopeGameType = gameType;
+            this.activeRules = null; // Re-select on next use
+        }
+    }
+
+    @Override
+    public CompiledRuleIndex getActiveRules() {
+        ScopedRuleSet source = this.useServerConfig ? ModConfig.SERVER.getGlobalRuleSet() : getRuleSet();
+        if (this.activeRules == null || this.activeSource != source) {
+            this.activeRules = source.select(this.scopeDimension, this.scopeGameType);
+            this.activeSource = source;
+        }
+        return this.activeRules;
+    }
+
     @Override
     public boolean isUsingServerConfig() {
         return this.useServerConfig;
@@ -43,6 +98,7 @@ public class PlayerConfig implements IPlayerConfig {
     @Override
     public void setUseServerConfig(boolean useServerConfig) {
         this.useServerConfig = useServerConfig;
+        OffhandPrefilter.markDirty(); // The player's list enters or leaves the active union
         AutoOffhand.LOGGER.debug("PlayerConfig capability useServerConfig set to: {}", this.useServerConfig);
     }
 
@@ -69,6 +125,8 @@ public class PlayerConfig implements IPlayerConfig {
             }
         }
         this.configList = loadedList; // Directly assign the loaded list
+        this.compiledRules = null; // Rebuild on next use
+        OffhandPrefilter.markDirty();
 
         // Load the boolean flag, defaulting to false if not present
         this.useServerConfig = nbt.getBoolean(NBT_KEY_USE_SERVER_CONFIG);
@@ -0,0 +1,153 @@
+package com.thunderscore.autooffhand.config;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+import com.thunderscore.autooffhand.AutoOffhand;
+import com.thunderscore.autooffhand.core.RulePlatform;
+
+import net.minecraft.core.Registry;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.entity.EquipmentSlot;
+import net.minecraft.world.entity.Mob;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraftforge.common.ToolAction;
+import net.minecraftforge.common.ToolActions;
+import net.minecraftforge.common.extensions.IForgeItem;
+import net.minecraftforge.registries.ForgeRegistries;
+
+/**
+ * Parsed form of a "c:" entry: matches items by what they can do rather than by id.
+ * <ul>
+ *     <li>"c:totem": the vanilla totem plus anything in the #autooffhand:totems item tag</li>
+ *     <li>"c:offhand": items whose preferred equipment slot is the offhand (vanilla and modded shields)</li>
+ *     <li>"c:&lt;tool action&gt;": items that can perform the Forge ToolAction, e.g. "c:shield_block"</li>
+ * </ul>
+ * Tool action names must be known: vanilla's (see {@link ToolActions}) or ones other mods have created, so a typo
+ * is rejected instead of silently matching nothing.
+ * The check builds a stack and may call into other mods' item classes, so the compiled index memoises it.
+ * <p>
+ * Indexes only run the check for its {@link #candidates()}: the items whose plain stack passes, plus those whose
+ * class overrides the stack hook the check goes through, whose answer may depend on NBT (e.g. modular tools).
+ * The candidates are computed once per capability and tag reload, not per compiled list.
+ */
+public final class CapabilityRule implements RulePlatform.CapabilityCheck<Item, CompoundTag> {
+
+    // Item tag other mods (or modpacks) can extend with their own totem-like items
+    public static final TagKey<Item> TOTEMS = TagKey.create(Registry.ITEM_REGISTRY, new ResourceLocation(AutoOffhand.MOD_ID, "totems"));
+
+    private static final String TOTEM = "totem";
+    private static final String OFFHAND = "offhand";
+
+    // Candidate items per capability name; "c:totem" reads an item tag, so this is cleared on tag reloads
+    private static final Map<String, Set<Item>> CANDIDATES = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final Predicate<ItemStack> check;
+    // Whether the item's answer may differ between stacks, so a failing plain stack doesn't rule it out
+    private final Predicate<Item> stackSensitive;
+
+    private CapabilityRule(String name, Predicate<ItemStack> check, Predicate<Item> stackSensitive) {
+        this.name = name;
+        this.check = check;
+        this.stackSensitive = stackSensitive;
+    }
+
+    /**
+     * Forgets the candidate items of every capability. Called when item tags are (re)loaded.
+     */
+    public static void onTagsReloaded() {
+        CANDIDATES.clear();
+    }
+
+    /**
+     * Parses a "c:" entry.
+     *
+     * @param entry The string entry from the config.
+     * @return The rule, or null if the capability name is malformed or not a known tool action.
+     */
+    @Nullable
+    public static CapabilityRule parse(String entry) {
+        if (entry == null || !entry.startsWith(ConfigItemUtils.CAPABILITY_PREFIX)) {
+            return null;
+        }
+        String name = entry.substring(ConfigItemUtils.CAPABILITY_PREFIX.length()).trim().toLowerCase(Locale.ROOT);
+        if (TOTEM.equals(name)) {
+            return new CapabilityRule(name, stack -> stack.is(Items.TOTEM_OF_UNDYING) || stack.is(TOTEMS), item -> false);
+        }
+        if (OFFHAND.equals(name)) {
+            return new CapabilityRule(name, stack -> Mob.getEquipmentSlotForItem(stack) == EquipmentSlot.OFFHAND,
+                    item -> overrides(item, "getEquipmentSlot", ItemStack.class));
+        }
+        ToolAction action = knownToolAction(name);
+        if (action == null) {
+            return null;
+        }
+        return new CapabilityRule(name, stack -> stack.canPerformAction(action),
+                item -> overrides(item, "canPerformAction", ItemStack.class, ToolAction.class));
+    }
+
+    // Whether the item's class overrides an IForgeItem stack hook, i.e. may answer differently per stack
+    private static boolean overrides(Item item, String method, Class<?>... parameterTypes) {
+        try {
+            return item.getClass().getMethod(method, parameterTypes).getDeclaringClass() != IForgeItem.class;
+        } catch (NoSuchMethodException e) {
+            return true; // Can't tell, so every stack is checked
+        }
+    }
+
+    // ToolAction.get creates an action for any name, so look the name up among the existing ones instead
+    @Nullable
+    private static ToolAction knownToolAction(String name) {
+        if (name.isEmpty()) {
+            return null;
+        }
+        // Reading a ToolActions constant loads the class, so vanilla's actions exist even if nothing else used them yet
+        Objects.requireNonNull(ToolActions.SHIELD_BLOCK);
+        for (ToolAction action : ToolAction.getActions()) {
+            if (action.name().equals(name)) {
+                return action;
+            }
+        }
+        return null;
+    }
+
+    // The capability name without the prefix, for display
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Set<Item> candidates() {
+        return CANDIDATES.computeIfAbsent(name, key -> {
+            Set<Item> items = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Item item : ForgeRegistries.ITEMS.getValues()) {
+                if (stackSensitive.test(item) || test(item, null)) {
+                    items.add(item);
+                }
+            }
+            return Collections.unmodifiableSet(items);
+        });
+    }
+
+    @Override
+    public boolean test(Item item, @Nullable CompoundTag tag) {
+        ItemStack stack = new ItemStack(item);
+        if (tag != null) {
+            stack.setTag(tag.copy()); // Item code may mutate the stack; never hand it the picked-up stack's tag
+        }
+        return check.test(stack);
+    }
+}
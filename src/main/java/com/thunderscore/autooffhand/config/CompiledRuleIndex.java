@@ -0,0 +1,220 @@
+package com.thunderscore.autooffhand.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.thunderscore.autooffhand.core.RuleIndex;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * Forge-facing handle on a compiled config entry list.
+ * The rule model, compiler and matcher live in the pure-Java core ({@link RuleIndex}); this class adapts it to
+ * {@link ItemStack}s through {@link ForgeRulePlatform} and interns indexes by list content, so players with
+ * identical lists share one instance. An index may carry a deny layer that vetoes matches (see the layered
+ * {@link #compile(List, List)}).
+ * <p>
+ * Tag entries are flattened at compile time, so every index is tied to the tag state it was built against.
+ * {@link #onTagsReloaded()} drops the interned indexes and marks all existing ones stale.
+ */
+public final class CompiledRuleIndex {
+
+    // Rank of a stack no rule matches; worse than every real rank
+    public static final int NO_MATCH = RuleIndex.NO_MATCH;
+    // Target slot of entries without a "@<slot>:" routing prefix; hotbar targets are slot indexes 0-8
+    public static final int OFFHAND = RuleIndex.OFFHAND;
+    public static final int HOTBAR_SIZE = RuleIndex.HOTBAR_SIZE;
+
+    public static final CompiledRuleIndex EMPTY = new CompiledRuleIndex(RuleIndex.empty(ForgeRulePlatform.INSTANCE));
+
+    // Recently compiled indexes keyed by their source [allow, deny] lists, bounded so abandoned lists age out
+    private static final int MAX_INTERNED = 256;
+    private static final Map<List<List<String>>, CompiledRuleIndex> INTERNED = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<List<String>>, CompiledRuleIndex> eldest) {
+            return size() > MAX_INTERNED;
+        }
+    };
+
+    // Bumped on every tag reload; indexes built under an older generation hold outdated tag members
+    private static volatile int generation = 0;
+
+    private final RuleIndex<Item, CompoundTag> index;
+    private final int builtGeneration;
+
+    private CompiledRuleIndex(RuleIndex<Item, CompoundTag> index) {
+        this.index = index;
+        this.builtGeneration = generation;
+    }
+
+    /**
+     * Forgets every interned index and marks existing ones stale. Called when item tags are (re)loaded.
+     */
+    public static void onTagsReloaded() {
+        synchronized (INTERNED) {
+            INTERNED.clear();
+            generation++;
+        }
+        CapabilityRule.onTagsReloaded();
+    }
+
+    /**
+     * @return The current tag generation, bumped by {@link #onTagsReloaded()}.
+     */
+    public static int generation() {
+        return generation;
+    }
+
+    /**
+     * @return true if this index was compiled against tags that have since been reloaded and should be recompiled.
+     */
+    public boolean isStale() {
+        // EMPTY holds no rules, so there is nothing to refresh
+        return this != EMPTY && builtGeneration != generation;
+    }
+
+    /**
+     * Parses every entry of a config list and builds the per-Item index.
+     * Invalid entries are skipped (ConfigItemUtils.parseConfigEntry already logs them).
+     * If an identical list was compiled recently, that instance is returned instead.
+     *
+     * @param entries The raw config entries (registry names, #tags, modid:* wildcards, n:names, p:partial NBT,
+     *                c:capabilities or NBT strings, optionally behind a "@<slot>:" routing prefix).
+     * @return The compiled index, or {@link #EMPTY} if nothing could be compiled.
+     */
+    public static CompiledRuleIndex compile(List<? extends String> entries) {
+        return compile(entries, Collections.emptyList());
+    }
+
+    /**
+     * Builds one merged index from an allow list (already concatenated from its layers) and a deny list.
+     * Interned like {@link #compile(List)}, keyed by both lists.
+     *
+     * @param allowEntries Entries that move a stack to the offhand.
+     * @param denyEntries Entries that veto a match from the allow list; may be empty.
+     * @return The merged index, or {@link #EMPTY} if no allow rule could be compiled.
+     */
+    public static CompiledRuleIndex compile(List<? extends String> allowEntries, List<? extends String> denyEntries) {
+        if (allowEntries == null || allowEntries.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<String> allow = new ArrayList<>(allowEntries);
+        List<String> deny = denyEntries == null ? Collections.emptyList() : new ArrayList<>(denyEntries);
+        List<List<String>> key = Arrays.asList(allow, deny);
+        synchronized (INTERNED) {
+            CompiledRuleIndex interned = INTERNED.get(key);
+            if (interned != null) {
+                return interned;
+            }
+        }
+        RuleIndex<Item, CompoundTag> index = RuleIndex.compileLayered(ForgeRulePlatform.INSTANCE, allow, deny);
+        CompiledRuleIndex compiled = index.isEmpty() ? EMPTY : new CompiledRuleIndex(index);
+        synchronized (INTERNED) {
+            CompiledRuleIndex raced = INTERNED.putIfAbsent(key, compiled);
+            return raced != null ? raced : compiled;
+        }
+    }
+
+    /**
+     * Checks whether the given stack is matched by any rule in this index.
+     *
+     * @param stack The stack being picked up.
+     * @return true if any rule matches the stack and no deny rule does.
+     */
+    public boolean matches(ItemStack stack) {
+        if (stack.isEmpty()) {
+            return false;
+        }
+        return index.matches(stack.getItem(), stack.getTag());
+    }
+
+    /**
+     * Gets the priority of the given stack: the list position of the best entry that matches it.
+     * Ranks are precomputed with the rules, so comparing two stacks costs two lookups.
+     *
+     * @param stack The stack to rank.
+     * @return The rank (0 is the highest priority), or {@link #NO_MATCH} if no rule matches or a deny rule does.
+     */
+    public int rank(ItemStack stack) {
+        if (stack.isEmpty()) {
+            return NO_MATCH;
+        }
+        return index.rank(stack.getItem(), stack.getTag());
+    }
+
+    /**
+     * Resolves where a matched stack goes. Targets are stored per rank, so this is one array read.
+     *
+     * @param rank A rank returned by {@link #rank}.
+     * @return A hotbar slot index (0-8) or {@link #OFFHAND}.
+     */
+    public int targetSlot(int rank) {
+        return index.targetSlot(rank);
+    }
+
+    /**
+     * @return true if some entry routes to a hotbar slot rather than the offhand.
+     */
+    public boolean hasHotbarRoutes() {
+        return index.hasHotbarRoutes();
+    }
+
+    /**
+     * Checks whether the decision for an Item can depend on the stack's NBT (NBT, partial NBT, capability or name rules).
+     * When it can't, {@link #rank} is one lookup by Item and is cheaper than fingerprinting the tag for a cache.
+     *
+     * @param item The item type of the stack.
+     * @return true if the stack's NBT may change the decision.
+     */
+    public boolean dependsOnTag(Item item) {
+        return index.dependsOnTag(item);
+    }
+
+    /**
+     * Checks whether the decision for this Item and NBT fingerprint is fully determined by the pair.
+     * Only such decisions are safe to cache under the fingerprint.
+     *
+     * @param item The item type of the stack.
+     * @param fingerprint The stack's {@link ConfigItemUtils#nbtFingerprint}.
+     * @return true if a decision for the pair can be cached.
+     */
+    public boolean isDecidedByFingerprint(Item item, int fingerprint) {
+        return index.isDecidedByFingerprint(item, fingerprint);
+    }
+
+    /**
+     * Sets the numeric registry id of every Item this index can match in the given bitset.
+     *
+     * @param itemIds The bitset to add to, indexed by {@link Item#getId}.
+     */
+    public void addItemIds(BitSet itemIds) {
+        index.addItemIds(itemIds);
+    }
+
+    /**
+     * @return true if a name rule can match any item type, so the prefilter must let every pickup through.
+     */
+    public boolean matchesAnyItemType() {
+        return index.matchesAnyItemType();
+    }
+
+    public int contentHash() {
+        return index.contentHash();
+    }
+
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    public int size() {
+        return index.size();
+    }
+}
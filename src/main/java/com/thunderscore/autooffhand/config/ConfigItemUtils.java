@@ -8,22 +8,42 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.thunderscore.autooffhand.core.RuleIndex;
 
+import net.minecraft.core.Registry;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.Tag;
 import net.minecraft.nbt.TagParser;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
 import net.minecraftforge.registries.ForgeRegistries;
 
 public final class ConfigItemUtils {
     private static final Logger LOGGER = LogManager.getLogger();
     private static final String DAMAGE_NBT_KEY = "Damage";
+    // Prefix marking an item tag entry, e.g. "#forge:shields"
+    public static final String TAG_PREFIX = "#";
+    // Suffix marking a namespace wildcard entry, e.g. "somemod:*"
+    public static final String NAMESPACE_WILDCARD_SUFFIX = ":*";
+    // Prefix marking a display-name substring entry, e.g. "n:totem"
+    public static final String NAME_PREFIX = RuleIndex.NAME_PREFIX;
+    // Prefix marking a partial NBT entry, e.g. p:*{Enchantments:[{id:"minecraft:mending"}]}
+    public static final String PARTIAL_PREFIX = RuleIndex.PARTIAL_PREFIX;
+    // Prefix marking a capability entry, e.g. "c:shield_block" (see CapabilityRule)
+    public static final String CAPABILITY_PREFIX = RuleIndex.CAPABILITY_PREFIX;
+    // Routing prefix sending an entry's items to a hotbar slot, e.g. "@9:minecraft:ender_pearl"
+    public static final String ROUTE_PREFIX = RuleIndex.ROUTE_PREFIX;
+    // Item part of a partial NBT entry that applies to every item
+    private static final String ANY_ITEM = "*";
 
     private ConfigItemUtils() {} // Prevent instantiation
 
     /**
      * Compares two ItemStacks, ignoring their count and the "Damage" NBT tag.
      * Checks if items are the same and if their NBT tags (excluding Damage) are equal.
+     * Neither tag is copied.
      *
      * @param stack1 The first ItemStack.
      * @param stack2 The second ItemStack.
@@ -39,24 +59,63 @@ public final class ConfigItemUtils {
         if (stack1.getItem() != stack2.getItem()) {
             return false;
         }
+        return tagsMatchIgnoreDamage(stack1.getTag(), stack2.getTag());
+    }
 
-        CompoundTag nbt1 = stack1.hasTag() ? stack1.getTag().copy() : null;
-        CompoundTag nbt2 = stack2.hasTag() ? stack2.getTag().copy() : null;
-
-        if (nbt1 != null) {
-            nbt1.remove(DAMAGE_NBT_KEY);
-            if (nbt1.isEmpty()) {
-                nbt1 = null;
-            }
+    /**
+     * Structurally compares two item tags, ignoring the "Damage" key. A tag that is null, empty
+     * or only holds Damage is treated as no tag at all. Nothing is copied.
+     *
+     * @param tag1 The first tag, may be null.
+     * @param tag2 The second tag, may be null.
+     * @return True if both tags hold the same entries apart from Damage.
+     */
+    public static boolean tagsMatchIgnoreDamage(@Nullable CompoundTag tag1, @Nullable CompoundTag tag2) {
+        int size1 = relevantSize(tag1);
+        if (size1 != relevantSize(tag2)) {
+            return false;
+        }
+        if (size1 == 0) {
+            return true;
         }
-        if (nbt2 != null) {
-            nbt2.remove(DAMAGE_NBT_KEY);
-            if (nbt2.isEmpty()) {
-                nbt2 = null;
+        for (String key : tag1.getAllKeys()) {
+            if (DAMAGE_NBT_KEY.equals(key)) {
+                continue;
             }
+            if (!Objects.equals(tag1.get(key), tag2.get(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes a stable fingerprint of an item tag with the "Damage" key excluded.
+     * Tags that match under {@link #tagsMatchIgnoreDamage} always have the same fingerprint, so a mismatch
+     * can reject a comparison immediately. CompoundTag hashes as the sum of its (key ^ value) entry hashes,
+     * which lets the Damage entry be subtracted out instead of hashing a copy without it.
+     *
+     * @param tag The tag to fingerprint, may be null.
+     * @return The fingerprint; 0 for a null tag or one that only holds Damage.
+     */
+    public static int nbtFingerprint(@Nullable CompoundTag tag) {
+        if (relevantSize(tag) == 0) {
+            return 0;
+        }
+        int hash = tag.hashCode();
+        Tag damage = tag.get(DAMAGE_NBT_KEY);
+        if (damage != null) {
+            hash -= DAMAGE_NBT_KEY.hashCode() ^ damage.hashCode();
         }
+        return hash;
+    }
 
-        return Objects.equals(nbt1, nbt2);
+    // Number of entries in the tag that take part in matching (everything except Damage)
+    private static int relevantSize(@Nullable CompoundTag tag) {
+        if (tag == null) {
+            return 0;
+        }
+        return tag.contains(DAMAGE_NBT_KEY) ? tag.size() - 1 : tag.size();
     }
 
     /**
@@ -77,12 +136,118 @@ public final class ConfigItemUtils {
     }
 
     /**
-     * Parses a string config entry, attempting to interpret it as either an NBT ItemStack
-     * or an item ResourceLocation.
+     * Parses the tag id of a "#namespace:path" entry. Only the syntax is checked, since tags may not be loaded
+     * yet when the config is validated.
      *
      * @param entry The string entry from the config.
-     * @return An Object representing the parsed data (either ItemStack or ResourceLocation),
-     *         or null if parsing fails or the entry is invalid.
+     * @return The item tag key, or null if the entry is not a well-formed tag entry.
+     */
+    @Nullable
+    public static TagKey<Item> parseTagEntry(String entry) {
+        if (entry == null || !entry.startsWith(TAG_PREFIX)) {
+            return null;
+        }
+        ResourceLocation rl = ResourceLocation.tryParse(entry.substring(TAG_PREFIX.length()));
+        return rl != null ? TagKey.create(Registry.ITEM_REGISTRY, rl) : null;
+    }
+
+    /**
+     * Parses the namespace of a "modid:*" wildcard entry. The mod does not have to be loaded.
+     *
+     * @param entry The string entry from the config.
+     * @return The namespace, or null if the entry is not a well-formed wildcard entry.
+     */
+    @Nullable
+    public static String parseNamespaceEntry(String entry) {
+        if (entry == null || !entry.endsWith(NAMESPACE_WILDCARD_SUFFIX)) {
+            return null;
+        }
+        String namespace = entry.substring(0, entry.length() - NAMESPACE_WILDCARD_SUFFIX.length());
+        return !namespace.isEmpty() && ResourceLocation.isValidNamespace(namespace) ? namespace : null;
+    }
+
+    /**
+     * Parsed form of an "n:" entry: a case-insensitive substring of the item's display name.
+     */
+    public static final class NameSubstring {
+        private final String substring;
+
+        NameSubstring(String substring) {
+            this.substring = substring;
+        }
+
+        // The substring as written in the config (without the prefix), for display
+        public String getSubstring() {
+            return substring;
+        }
+    }
+
+    /**
+     * Parsed form of a "p:" entry: an optional item and a partial template for the stack's tag
+     * (not the full saved stack), e.g. {@code p:minecraft:shield{Enchantments:[{id:"minecraft:mending"}]}}.
+     */
+    public static final class PartialNbt {
+        @Nullable private final Item item;
+        private final CompoundTag template;
+
+        PartialNbt(@Nullable Item item, CompoundTag template) {
+            this.item = item;
+            this.template = template;
+        }
+
+        // The required item, or null if the entry applies to every item ("p:*{...}")
+        @Nullable
+        public Item getItem() {
+            return item;
+        }
+
+        public CompoundTag getTemplate() {
+            return template;
+        }
+    }
+
+    /**
+     * Parses a "p:&lt;item|*&gt;{partial snbt}" entry.
+     *
+     * @param entry The string entry from the config.
+     * @return The parsed entry, or null if the item is unknown or the template is not valid SNBT.
+     */
+    @Nullable
+    public static PartialNbt parsePartialEntry(String entry) {
+        if (entry == null || !entry.startsWith(PARTIAL_PREFIX)) {
+            return null;
+        }
+        String body = entry.substring(PARTIAL_PREFIX.length());
+        int templateStart = body.indexOf('{');
+        if (templateStart < 0) {
+            return null;
+        }
+        String itemPart = body.substring(0, templateStart).trim();
+        Item item = null;
+        if (!ANY_ITEM.equals(itemPart)) {
+            ResourceLocation rl = ResourceLocation.tryParse(itemPart);
+            if (rl == null || !ForgeRegistries.ITEMS.containsKey(rl)) {
+                return null;
+            }
+            item = ForgeRegistries.ITEMS.getValue(rl);
+        }
+        try {
+            return new PartialNbt(item, TagParser.parseTag(body.substring(templateStart)));
+        } catch (CommandSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a string config entry, attempting to interpret it as an NBT ItemStack, an item tag ("#forge:shields"),
+     * a namespace wildcard ("somemod:*"), a name substring ("n:totem"), a partial NBT rule ("p:*{...}"),
+     * a capability ("c:shield_block") or an item ResourceLocation.
+     * A leading {@link RuleScope} prefix ("[dim:...]", "[mode:...]") is skipped; the scope is applied by {@link ScopedRuleSet}.
+     * So is a routing prefix ("@9:"); the target slot is resolved by {@link CompiledRuleIndex#targetSlot}.
+     *
+     * @param entry The string entry from the config.
+     * @return An Object representing the parsed data (ItemStack, TagKey, namespace String, NameSubstring, PartialNbt,
+     *         CapabilityRule or ResourceLocation), or null if parsing fails or the entry is invalid.
      */
     @Nullable
     public static Object parseConfigEntry(String entry) {
@@ -90,7 +255,44 @@ public final class ConfigItemUtils {
             return null;
         }
 
-        if (entry.startsWith("{")) {
+        if (entry.startsWith(RuleScope.SCOPE_START)) {
+            RuleScope scope = RuleScope.parse(entry);
+            if (scope == null) {
+                LOGGER.warn("Invalid scope prefix in config (expected [dim:<dimension>] and/or [mode:<game mode>]): {}", entry);
+                return null;
+            }
+            return parseConfigEntry(scope.getRule());
+        }
+        if (entry.startsWith(ROUTE_PREFIX)) {
+            if (RuleIndex.parseRoute(entry) == RuleIndex.INVALID_ROUTE) {
+                LOGGER.warn("Invalid routing prefix in config (expected one @1: to @9: or @offhand:, after any scope prefixes): {}", entry);
+                return null;
+            }
+            return parseConfigEntry(RuleIndex.stripRoute(entry));
+        }
+
+        if (entry.startsWith(NAME_PREFIX)) {
+            String substring = entry.substring(NAME_PREFIX.length()).trim();
+            if (!substring.isEmpty()) {
+                return new NameSubstring(substring);
+            } else {
+                LOGGER.warn("Empty name substring in config: {}", entry);
+            }
+        } else if (entry.startsWith(CAPABILITY_PREFIX)) {
+            CapabilityRule capability = CapabilityRule.parse(entry);
+            if (capability != null) {
+                return capability;
+            } else {
+                LOGGER.warn("Invalid capability entry in config (expected c:totem, c:offhand or c:<known tool action>): {}", entry);
+            }
+        } else if (entry.startsWith(PARTIAL_PREFIX)) {
+            PartialNbt partial = parsePartialEntry(entry);
+            if (partial != null) {
+                return partial;
+            } else {
+                LOGGER.warn("Invalid partial NBT entry in config (expected p:<item|*>{...}): {}", entry);
+            }
+        } else if (entry.startsWith("{")) {
             try {
                 CompoundTag nbt = TagParser.parseTag(entry);
                 // Ensure the NBT represents a valid item stack structure
@@ -111,6 +313,20 @@ public final class ConfigItemUtils {
             } catch (CommandSyntaxException e) {
                 LOGGER.warn("Failed to parse NBT string config entry: {}", entry, e);
             }
+        } else if (entry.startsWith(TAG_PREFIX)) {
+            TagKey<Item> tagKey = parseTagEntry(entry);
+            if (tagKey != null) {
+                return tagKey;
+            } else {
+                LOGGER.warn("Invalid item tag string in config: {}", entry);
+            }
+        } else if (entry.endsWith(NAMESPACE_WILDCARD_SUFFIX)) {
+            String namespace = parseNamespaceEntry(entry);
+            if (namespace != null) {
+                return namespace;
+            } else {
+                LOGGER.warn("Invalid namespace wildcard string in config: {}", entry);
+            }
         } else {
             ResourceLocation rl = ResourceLocation.tryParse(entry);
             if (rl != null && ForgeRegistries.ITEMS.containsKey(rl)) {
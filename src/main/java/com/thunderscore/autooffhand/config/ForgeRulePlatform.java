@@ -0,0 +1,179 @@
+package com.thunderscore.autooffhand.config;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.thunderscore.autooffhand.core.RulePlatform;
+
+import net.minecraft.core.Holder;
+import net.minecraft.core.Registry;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.registries.ForgeRegistries;
+
+/**
+ * Forge side of the matching core: items are registry {@link Item}s and tags are {@link CompoundTag}s.
+ * Parsing, fingerprinting and comparison all go through {@link ConfigItemUtils}, so the core matches exactly
+ * what the rest of the mod does.
+ */
+final class ForgeRulePlatform implements RulePlatform<Item, CompoundTag> {
+
+    static final ForgeRulePlatform INSTANCE = new ForgeRulePlatform();
+
+    // Lowercased hover names keyed by Item and NBT fingerprint, so name rules don't rebuild Components per pickup
+    private static final int MAX_NAMES = 4096;
+    private final Map<NameKey, String> lowercaseNames = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<NameKey, String> eldest) {
+            return size() > MAX_NAMES;
+        }
+    };
+
+    private ForgeRulePlatform() {} // Use INSTANCE
+
+    @Nullable
+    @Override
+    public Item item(String id) {
+        // parseConfigEntry validates the id against the registry and logs invalid entries
+        Object parsedEntry = ConfigItemUtils.parseConfigEntry(id);
+        if (parsedEntry instanceof ResourceLocation) {
+            return ForgeRegistries.ITEMS.getValue((ResourceLocation) parsedEntry);
+        }
+        return null;
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked") // parseConfigEntry only returns item tag keys
+    public Iterable<Item> tagMembers(String entry) {
+        Object parsedEntry = ConfigItemUtils.parseConfigEntry(entry);
+        if (!(parsedEntry instanceof TagKey)) {
+            return null;
+        }
+        TagKey<Item> tagKey = (TagKey<Item>) parsedEntry;
+        List<Item> members = new ArrayList<>();
+        // Empty until the server has loaded its tags; CompiledRuleIndex is recompiled on TagsUpdatedEvent
+        for (Holder<Item> holder : Registry.ITEM.getTagOrEmpty(tagKey)) {
+            members.add(holder.value());
+        }
+        return members;
+    }
+
+    @Nullable
+    @Override
+    public String parseNamespace(String entry) {
+        Object parsedEntry = ConfigItemUtils.parseConfigEntry(entry);
+        return parsedEntry instanceof String ? (String) parsedEntry : null;
+    }
+
+    @Override
+    public String namespaceOf(Item item) {
+        return item.getRegistryName().getNamespace();
+    }
+
+    @Override
+    public Iterable<Item> itemsInNamespace(String namespace) {
+        List<Item> items = new ArrayList<>();
+        for (Item item : ForgeRegistries.ITEMS.getValues()) {
+            if (namespace.equals(item.getRegistryName().getNamespace())) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    @Nullable
+    @Override
+    public ParsedStack<Item, CompoundTag> parseStack(String snbt) {
+        Object parsedEntry = ConfigItemUtils.parseConfigEntry(snbt);
+        if (parsedEntry instanceof ItemStack) {
+            ItemStack ruleStack = (ItemStack) parsedEntry;
+            return new ParsedStack<>(ruleStack.getItem(), ruleStack.getTag());
+        }
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public ParsedPredicate<Item, CompoundTag> parsePartial(String entry) {
+        Object parsedEntry = ConfigItemUtils.parseConfigEntry(entry);
+        if (parsedEntry instanceof ConfigItemUtils.PartialNbt) {
+            ConfigItemUtils.PartialNbt partial = (ConfigItemUtils.PartialNbt) parsedEntry;
+            return new ParsedPredicate<>(partial.getItem(), PartialNbtPredicate.compile(partial.getTemplate()));
+        }
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public CapabilityCheck<Item, CompoundTag> parseCapability(String entry) {
+        Object parsedEntry = ConfigItemUtils.parseConfigEntry(entry);
+        return parsedEntry instanceof CapabilityRule ? (CapabilityRule) parsedEntry : null;
+    }
+
+    @Override
+    public int fingerprint(@Nullable CompoundTag tag) {
+        return ConfigItemUtils.nbtFingerprint(tag);
+    }
+
+    @Override
+    public boolean tagsMatch(@Nullable CompoundTag ruleTag, @Nullable CompoundTag stackTag) {
+        return ConfigItemUtils.tagsMatchIgnoreDamage(ruleTag, stackTag);
+    }
+
+    @Override
+    public String lowercaseName(Item item, @Nullable CompoundTag tag, int fingerprint) {
+        NameKey key = new NameKey(item, fingerprint);
+        synchronized (lowercaseNames) {
+            String cached = lowercaseNames.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        ItemStack stack = new ItemStack(item);
+        if (tag != null) {
+            stack.setTag(tag.copy()); // setTag may write Damage, so never hand it the picked-up stack's tag
+        }
+        String name = stack.getHoverName().getString().toLowerCase(Locale.ROOT);
+        synchronized (lowercaseNames) {
+            lowercaseNames.put(key, name);
+        }
+        return name;
+    }
+
+    @Override
+    public int numericId(Item item) {
+        return Item.getId(item);
+    }
+
+    private static final class NameKey {
+        private final Item item;
+        private final int fingerprint;
+
+        NameKey(Item item, int fingerprint) {
+            this.item = item;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof NameKey)) return false;
+            NameKey other = (NameKey) o;
+            return item == other.item && fingerprint == other.fingerprint;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(item) + fingerprint;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.thunderscore.autooffhand.config;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -9,10 +10,16 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.thunderscore.autooffhand.MatchDecisionCache;
+import com.thunderscore.autooffhand.OffhandPrefilter;
+import com.thunderscore.autooffhand.ReturnableProjectiles;
+import com.thunderscore.autooffhand.Trace;
+import com.thunderscore.autooffhand.core.RuleIndex;
 
 import net.minecraft.nbt.TagParser;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraftforge.common.ForgeConfigSpec;
+import net.minecraftforge.fml.event.config.ModConfigEvent;
 import net.minecraftforge.registries.ForgeRegistries;
 
 public class ModConfig {
@@ -30,57 +37,170 @@ public class ModConfig {
         SERVER = specPair.getLeft();
     }
 
+    // Registered on the MOD event bus
+    public static void onConfigLoading(final ModConfigEvent.Loading event) {
+        onConfigChanged(event);
+    }
+
+    // Registered on the MOD event bus
+    public static void onConfigReloading(final ModConfigEvent.Reloading event) {
+        onConfigChanged(event);
+    }
+
+    /**
+     * Rebuilds the compiled server snapshots whenever the server config is loaded or reloaded from disk.
+     */
+    private static void onConfigChanged(final ModConfigEvent event) {
+        if (event.getConfig().getSpec() == SERVER_SPEC) {
+            LOGGER.debug("Server config {} fired, rebuilding compiled global list.", event.getClass().getSimpleName());
+            SERVER.rebuildGlobalRules();
+            ReturnableProjectiles.applyConfig(SERVER.returnableProjectileTypes.get());
+            Trace.configure(SERVER.traceCategories.get(), SERVER.tracePlayers.get(), SERVER.traceSampleRate.get());
+        }
+    }
+
+    /**
+     * Validator shared by the entry lists: registry names, item tags, namespace wildcards, name substrings,
+     * partial NBT, capabilities or NBT strings, each optionally behind a dimension/game mode scope and a routing prefix.
+     */
+    private static boolean isValidEntry(Object obj) {
+        if (!(obj instanceof String)) return false;
+        String str = (String) obj;
+        if (str.startsWith(RuleScope.SCOPE_START)) {
+            RuleScope scope = RuleScope.parse(str);
+            return scope != null && isValidEntry(scope.getRule());
+        } else if (str.startsWith(ConfigItemUtils.ROUTE_PREFIX)) {
+            return RuleIndex.parseRoute(str) != RuleIndex.INVALID_ROUTE && isValidEntry(RuleIndex.stripRoute(str));
+        } else if (str.startsWith(ConfigItemUtils.NAME_PREFIX)) {
+            return !str.substring(ConfigItemUtils.NAME_PREFIX.length()).trim().isEmpty();
+        } else if (str.startsWith(ConfigItemUtils.CAPABILITY_PREFIX)) {
+            return CapabilityRule.parse(str) != null;
+        } else if (str.startsWith(ConfigItemUtils.PARTIAL_PREFIX)) {
+            return ConfigItemUtils.parsePartialEntry(str) != null;
+        } else if (str.startsWith("{")) {
+            // Check if it's potentially valid NBT
+            try {
+                TagParser.parseTag(str);
+                return true;
+            } catch (CommandSyntaxException e) {
+                // Invalid NBT syntax
+                // Use the ModConfig logger
+                LOGGER.warn("Invalid NBT string in config: {}", str, e);
+                return false;
+            }
+        } else if (str.startsWith(ConfigItemUtils.TAG_PREFIX)) {
+            // Tags are not loaded yet when the config is validated, so only check the syntax
+            return ConfigItemUtils.parseTagEntry(str) != null;
+        } else if (str.endsWith(ConfigItemUtils.NAMESPACE_WILDCARD_SUFFIX)) {
+            // The mod may not be installed; an unknown namespace simply matches nothing
+            return ConfigItemUtils.parseNamespaceEntry(str) != null;
+        } else {
+            // Check if it's a valid item ResourceLocation
+            ResourceLocation rl = ResourceLocation.tryParse(str);
+            return rl != null && ForgeRegistries.ITEMS.containsKey(rl);
+        }
+    }
+
     // Renamed from CommonConfig to ServerConfig
     public static class ServerConfig {
         // This list now serves as the GLOBAL fallback
         public final ForgeConfigSpec.ConfigValue<List<? extends String>> globalAutoOffhandItems;
-        // Removing substring lists for now to simplify the capability implementation
-        // public final ForgeConfigSpec.ConfigValue<List<? extends String>> autoOffhandNameSubstrings;
+        // Name substrings are compiled into the global list as "n:" rules
+        public final ForgeConfigSpec.ConfigValue<List<? extends String>> autoOffhandNameSubstrings;
+        // Layered mode: player list, then global list, then deny list, merged into one index per player
+        public final ForgeConfigSpec.BooleanValue layeredEvaluation;
+        public final ForgeConfigSpec.ConfigValue<List<? extends String>> deniedAutoOffhandItems;
+        // Whether a higher-priority pickup pushes a lower-priority offhand item back into the inventory
+        public final ForgeConfigSpec.BooleanValue replaceLowerPriorityOffhand;
+        // Whether matching pickups are collected per player and resolved once at the end of the tick
+        public final ForgeConfigSpec.BooleanValue batchPickupsPerTick;
+        // Extra projectile entity types whose return puts their item back into the offhand
+        public final ForgeConfigSpec.ConfigValue<List<? extends String>> returnableProjectileTypes;
+        // Time per server tick for deferred offhand checks; the rest carries over
+        public final ForgeConfigSpec.IntValue deferredCheckBudgetMicros;
+        // Whether an emptied offhand is refilled from the main inventory
+        public final ForgeConfigSpec.BooleanValue autoRefillOffhand;
+        // Removing ID substring list for now to simplify the capability implementation
         // public final ForgeConfigSpec.ConfigValue<List<? extends String>> autoOffhandIdSubstrings;
 
+        // Hot-path tracing switches (see Trace)
+        public final ForgeConfigSpec.ConfigValue<List<? extends String>> traceCategories;
+        public final ForgeConfigSpec.ConfigValue<List<? extends String>> tracePlayers;
+        public final ForgeConfigSpec.IntValue traceSampleRate;
+
+        // Compiled snapshot of globalAutoOffhandItems (per scope), swapped atomically on reload so pickups never copy the list
+        private volatile ScopedRuleSet globalRules = ScopedRuleSet.EMPTY;
+        // Raw global and deny layers as of the last rebuild, merged into player indexes
+        private volatile List<String> globalAllowEntries = List.of();
+        private volatile List<String> denyEntries = List.of();
+        // Bumped whenever a shared layer changes, so merged player indexes know to rebuild
+        private volatile int layerVersion = 0;
+
         ServerConfig(ForgeConfigSpec.Builder builder) { // Renamed constructor
             builder.comment("Server-only configuration settings for Auto Offhand (Global Fallbacks)") // Updated comment
                    .push("general");
 
             // Renamed variable and updated comment
             globalAutoOffhandItems = builder
-                    .comment("GLOBAL FALLBACK list: Item registry names (e.g., 'minecraft:totem_of_undying') or NBT strings. Used for players without the mod OR if per-player config doesn't match.")
+                    .comment("GLOBAL FALLBACK list: Item registry names (e.g., 'minecraft:totem_of_undying'), item tags (e.g., '#forge:shields'), whole mods (e.g., 'somemod:*'), display-name substrings (e.g., 'n:totem'), partial NBT (e.g., 'p:*{Enchantments:[{id:\"minecraft:mending\"}]}'), capabilities (e.g., 'c:shield_block', 'c:totem', 'c:offhand') or NBT strings. Any entry can be limited to a dimension and/or game mode with '[dim:<dimension>]' and '[mode:<game mode>]' prefixes (e.g., '[dim:minecraft:the_nether][mode:survival]minecraft:fire_charge'). Entries earlier in the list have higher priority. Items go to the offhand unless the entry starts with '@1:' to '@9:' to route them to that hotbar slot instead (e.g., '@9:minecraft:ender_pearl'); scope prefixes go before the route (e.g., '[dim:minecraft:the_end]@9:minecraft:ender_pearl'). Used for players without the mod, players using the server config, and (with layeredEvaluation) when a player's own list doesn't match.")
                     .translation("config.autooffhand.globalAutoOffhandItems") // Updated translation key
                     .defineList("globalAutoOffhandItems", // Updated name
                             Arrays.asList("minecraft:totem_of_undying", "minecraft:shield"), // Default values remain
-                            // Validator: Accepts registry names or NBT strings
-                            (obj) -> { // Validator remains the same
-                                if (!(obj instanceof String)) return false;
-                                String str = (String) obj;
-                                if (str.startsWith("{")) {
-                                    // Check if it's potentially valid NBT
-                                    try {
-                                        TagParser.parseTag(str);
-                                        return true;
-                                    } catch (CommandSyntaxException e) {
-                                        // Invalid NBT syntax
-                                        // Use the ModConfig logger
-                                        LOGGER.warn("Invalid NBT string in config: {}", str, e);
-                                        return false;
-                                    }
-                                } else {
-                                    // Check if it's a valid item ResourceLocation
-                                    ResourceLocation rl = ResourceLocation.tryParse(str);
-                                    return rl != null && ForgeRegistries.ITEMS.containsKey(rl);
-                                }
-                            }
+                            // Validator: Accepts every entry form the matcher understands
+                            ModConfig::isValidEntry
                     );
 
-            // Removing substring lists for now to simplify capability implementation
-            /*
             autoOffhandNameSubstrings = builder
-                    .comment("A list of substrings. If an item's display name contains any of these (case-insensitive), it will be moved to the offhand.")
+                    .comment("A list of substrings. If an item's display name contains any of these (case-insensitive), it will be moved to the offhand. Same as adding 'n:<substring>' entries to globalAutoOffhandItems.")
                     .translation("config.autooffhand.autoOffhandNameSubstrings")
                     .defineList("autoOffhandNameSubstrings",
                             Arrays.asList(), // Default empty list
                             (obj) -> obj instanceof String
                     );
 
+            layeredEvaluation = builder
+                    .comment("If true, a player's own list is checked first and the global list is used as a fallback when it doesn't match. If false, a player uses either their own list or the global list (see /autooffhand toggle).")
+                    .translation("config.autooffhand.layeredEvaluation")
+                    .define("layeredEvaluation", false);
+
+            deniedAutoOffhandItems = builder
+                    .comment("DENY list: items matching any of these entries are never moved to the offhand, even if the player or global list matches. Accepts the same entry forms as globalAutoOffhandItems.")
+                    .translation("config.autooffhand.deniedAutoOffhandItems")
+                    .defineList("deniedAutoOffhandItems",
+                            Arrays.asList(), // Default empty list
+                            ModConfig::isValidEntry
+                    );
+
+            replaceLowerPriorityOffhand = builder
+                    .comment("If true, picking up an item that matches an entry higher up in the list than the item currently in its target slot (the offhand, or the hotbar slot it is routed to) moves that item to a free inventory slot and takes its place. Entries earlier in a list have higher priority (in layered mode, the player's own entries come before the global ones). Items that match no entry are never replaced.")
+                    .translation("config.autooffhand.replaceLowerPriorityOffhand")
+                    .define("replaceLowerPriorityOffhand", false);
+
+            batchPickupsPerTick = builder
+                    .comment("If true, matching pickups are collected per player during a server tick and only the highest-priority one is moved to the offhand at the end of the tick; the others go to the inventory as usual. Makes the result independent of pickup order when many items are collected at once (e.g. at mob farms).")
+                    .translation("config.autooffhand.batchPickupsPerTick")
+                    .define("batchPickupsPerTick", false);
+
+            returnableProjectileTypes = builder
+                    .comment("Extra projectile entity types (e.g., 'somemod:thrown_spear') that return to their owner like a Loyalty trident. When one returns, the item is moved to the offhand if it matches the player's list. Tridents, Tetra's thrown items and types registered by other mods are handled without being listed here.")
+                    .translation("config.autooffhand.returnableProjectileTypes")
+                    .defineList("returnableProjectileTypes",
+                            Arrays.asList(), // Default empty list
+                            (obj) -> obj instanceof String && ResourceLocation.tryParse((String) obj) != null
+                    );
+
+            deferredCheckBudgetMicros = builder
+                    .comment("Time budget in microseconds per server tick for the inventory checks queued by returning projectiles. Checks that don't fit run on the next tick. At least one check runs per tick.")
+                    .translation("config.autooffhand.deferredCheckBudgetMicros")
+                    .defineInRange("deferredCheckBudgetMicros", 500, 10, 50000);
+
+            autoRefillOffhand = builder
+                    .comment("If true, when the offhand runs empty (a totem of undying is used up, the last item of a stack is eaten, placed or thrown, ...) the highest-priority matching item in the main inventory is moved to it. Only entries that target the offhand are considered.")
+                    .translation("config.autooffhand.autoRefillOffhand")
+                    .define("autoRefillOffhand", false);
+
+            // Removing ID substring list for now to simplify capability implementation
+            /*
             autoOffhandIdSubstrings = builder
                     .comment("A list of substrings. If an item's registry ID (e.g., 'minecraft:iron_sword') contains any of these (case-insensitive), it will be moved to the offhand.")
                     .translation("config.autooffhand.autoOffhandIdSubstrings")
@@ -91,8 +211,94 @@ public class ModConfig {
             */
 
             builder.pop();
+
+            builder.comment("Diagnostic tracing. Costs nothing while no category is enabled.")
+                   .push("tracing");
+
+            traceCategories = builder
+                    .comment("Trace categories to log: PICKUP, MATCH, PROJECTILE, NETWORK, REFILL, or ALL. Empty disables tracing.")
+                    .translation("config.autooffhand.traceCategories")
+                    .defineList("traceCategories",
+                            Arrays.asList(),
+                            (obj) -> obj instanceof String
+                    );
+
+            tracePlayers = builder
+                    .comment("Only trace events for these player names or UUIDs. Empty traces every player.")
+                    .translation("config.autooffhand.tracePlayers")
+                    .defineList("tracePlayers",
+                            Arrays.asList(),
+                            (obj) -> obj instanceof String
+                    );
+
+            traceSampleRate = builder
+                    .comment("Log one in every N traced events per category.")
+                    .translation("config.autooffhand.traceSampleRate")
+                    .defineInRange("traceSampleRate", 1, 1, 1000000);
+
+            builder.pop();
+        }
+
+        /**
+         * Gets the compiled snapshot of the global list with every entry regardless of scope.
+         * A superset of what any one player can match; used by the prefilter. Never null.
+         */
+        public CompiledRuleIndex getGlobalRules() {
+            return globalRules.union();
+        }
+
+        /**
+         * Gets the compiled global list (with the deny layer) by scope. Never null; empty until the config has loaded.
+         */
+        public ScopedRuleSet getGlobalRuleSet() {
+            return globalRules;
         }
 
-        // Removed helper methods for substrings as the config values are removed for now
+        /**
+         * Recompiles the global list (with the deny layer) and publishes the new snapshot.
+         * Called on config load/reload, after the list is changed in-game and when item tags are reloaded.
+         * Merged player indexes see the new layer version and rebuild on their next use.
+         */
+        public void rebuildGlobalRules() {
+            List<String> entries = new ArrayList<>(globalAutoOffhandItems.get());
+            for (String substring : autoOffhandNameSubstrings.get()) {
+                entries.add(ConfigItemUtils.NAME_PREFIX + substring);
+            }
+            List<String> deny = new ArrayList<>(deniedAutoOffhandItems.get());
+            ScopedRuleSet rebuilt = ScopedRuleSet.build(entries, deny);
+            globalAllowEntries = List.copyOf(entries);
+            denyEntries = List.copyOf(deny);
+            globalRules = rebuilt;
+            layerVersion++;
+            MatchDecisionCache.invalidate();
+            OffhandPrefilter.markDirty();
+            LOGGER.debug("Rebuilt compiled global list ({} rules, {} deny entries).", rebuilt.union().size(), deny.size());
+        }
+
+        /**
+         * Version of the shared layers (global and deny lists); changes whenever they are rebuilt.
+         */
+        public int getLayerVersion() {
+            return layerVersion;
+        }
+
+        /**
+         * Builds a player's rule set: the player's entries, then (in layered mode) the global entries, with the
+         * deny layer attached. Each scope compiles to one merged index, so one lookup covers every layer.
+         *
+         * @param playerEntries The player's own config list.
+         * @return The merged rule set.
+         */
+        public ScopedRuleSet buildPlayerRuleSet(List<String> playerEntries) {
+            if (!SERVER_SPEC.isLoaded()) {
+                return ScopedRuleSet.build(playerEntries, List.of());
+            }
+            List<String> allow = playerEntries;
+            if (layeredEvaluation.get()) {
+                allow = new ArrayList<>(playerEntries);
+                allow.addAll(globalAllowEntries);
+            }
+            return ScopedRuleSet.build(allow, denyEntries);
+        }
     }
 }
@@ -0,0 +1,142 @@
+package com.thunderscore.autooffhand.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+
+/**
+ * Compiled form of a partial NBT template (the "{...}" part of a "p:" entry).
+ * The template is turned into a tree of path checks once; testing a stack's tag only walks the paths the
+ * template names, reading the tag in place without copying it.
+ * <p>
+ * Semantics follow vanilla's partial NbtUtils.compareNbt: every key of a template compound must be present
+ * and match, every element of a non-empty template list must match some element of the stack's list, an empty
+ * template list only matches an empty list, and any other value, int/byte/long arrays included, must be equal
+ * (including its type, e.g. 1s vs 1, or a list vs an int array).
+ */
+final class PartialNbtPredicate implements Predicate<CompoundTag> {
+
+    // Stand-in for stacks without a tag; never mutated
+    private static final CompoundTag EMPTY = new CompoundTag();
+
+    private final Node root;
+
+    private PartialNbtPredicate(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * @param template The parsed template compound. It is compiled eagerly and not referenced afterwards.
+     */
+    static PartialNbtPredicate compile(CompoundTag template) {
+        return new PartialNbtPredicate(compileNode(template));
+    }
+
+    @Override
+    public boolean test(@Nullable CompoundTag tag) {
+        // A stack without a tag behaves like an empty compound: only an empty template matches it
+        return root.test(tag != null ? tag : EMPTY);
+    }
+
+    private static Node compileNode(Tag template) {
+        if (template instanceof CompoundTag) {
+            CompoundTag compound = (CompoundTag) template;
+            List<String> keys = new ArrayList<>(compound.getAllKeys());
+            Node[] children = new Node[keys.size()];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = compileNode(compound.get(keys.get(i)));
+            }
+            return new CompoundNode(keys.toArray(new String[0]), children);
+        }
+        if (template instanceof ListTag) {
+            ListTag list = (ListTag) template;
+            Node[] elements = new Node[list.size()];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = compileNode(list.get(i));
+            }
+            return new ListNode(elements);
+        }
+        return new ValueNode(template.copy());
+    }
+
+    private interface Node {
+        boolean test(Tag tag);
+    }
+
+    // Every listed key must be present and match its child check
+    private static final class CompoundNode implements Node {
+        private final String[] keys;
+        private final Node[] children;
+
+        CompoundNode(String[] keys, Node[] children) {
+            this.keys = keys;
+            this.children = children;
+        }
+
+        @Override
+        public boolean test(Tag tag) {
+            if (!(tag instanceof CompoundTag)) {
+                return false;
+            }
+            CompoundTag compound = (CompoundTag) tag;
+            for (int i = 0; i < keys.length; i++) {
+                Tag value = compound.get(keys[i]);
+                if (value == null || !children[i].test(value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Every template element must match at least one element of the stack's list, in any order;
+    // an empty template only matches an empty list
+    private static final class ListNode implements Node {
+        private final Node[] elements;
+
+        ListNode(Node[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public boolean test(Tag tag) {
+            if (!(tag instanceof ListTag)) {
+                return false;
+            }
+            ListTag list = (ListTag) tag;
+            if (elements.length == 0) {
+                return list.isEmpty();
+            }
+            for (Node element : elements) {
+                boolean found = false;
+                for (int i = 0; i < list.size() && !found; i++) {
+                    found = element.test(list.get(i));
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Leaf value, int/byte/long arrays included: exact equality
+    private static final class ValueNode implements Node {
+        private final Tag value;
+
+        ValueNode(Tag value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(Tag tag) {
+            return value.equals(tag);
+        }
+    }
+}
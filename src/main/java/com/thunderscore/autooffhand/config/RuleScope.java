@@ -0,0 +1,110 @@
+package com.thunderscore.autooffhand.config;
+
+import javax.annotation.Nullable;
+
+import com.thunderscore.autooffhand.core.RuleIndex;
+
+import net.minecraft.core.Registry;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.GameType;
+import net.minecraft.world.level.Level;
+
+/**
+ * Optional scope prefix of a config entry, limiting it to a dimension and/or game mode, e.g.
+ * "[dim:minecraft:the_nether]minecraft:fire_charge" or "[mode:creative][dim:minecraft:overworld]#forge:shields".
+ * Entries without a prefix apply everywhere.
+ */
+public final class RuleScope {
+
+    public static final String SCOPE_START = RuleIndex.SCOPE_START;
+    private static final String DIMENSION_KEY = "dim:";
+    private static final String MODE_KEY = "mode:";
+
+    // ResourceKeys are interned, so scopes compare dimensions by identity
+    @Nullable private final ResourceKey<Level> dimension;
+    @Nullable private final GameType gameType;
+    // The entry with its scope prefixes removed
+    private final String rule;
+
+    private RuleScope(@Nullable ResourceKey<Level> dimension, @Nullable GameType gameType, String rule) {
+        this.dimension = dimension;
+        this.gameType = gameType;
+        this.rule = rule;
+    }
+
+    /**
+     * Splits an entry into its scope prefixes and the rule they apply to.
+     *
+     * @param entry The string entry from the config.
+     * @return The parsed scope (unscoped for entries without a prefix), or null if a prefix is malformed.
+     */
+    @Nullable
+    public static RuleScope parse(String entry) {
+        ResourceKey<Level> dimension = null;
+        GameType gameType = null;
+        String rest = entry;
+        while (rest.startsWith(SCOPE_START)) {
+            int end = rest.indexOf(']');
+            if (end < 0) {
+                return null;
+            }
+            String scope = rest.substring(1, end).trim();
+            if (scope.startsWith(DIMENSION_KEY) && dimension == null) {
+                ResourceLocation location = ResourceLocation.tryParse(scope.substring(DIMENSION_KEY.length()).trim());
+                if (location == null) {
+                    return null;
+                }
+                dimension = ResourceKey.create(Registry.DIMENSION_REGISTRY, location);
+            } else if (scope.startsWith(MODE_KEY) && gameType == null) {
+                gameType = GameType.byName(scope.substring(MODE_KEY.length()).trim(), null);
+                if (gameType == null) {
+                    return null;
+                }
+            } else {
+                return null; // Unknown or repeated scope key
+            }
+            rest = rest.substring(end + 1);
+        }
+        return new RuleScope(dimension, gameType, rest);
+    }
+
+    /**
+     * @return The entry without its scope prefixes.
+     */
+    public String getRule() {
+        return rule;
+    }
+
+    /**
+     * @return The dimension the entry is limited to, or null if it applies in every dimension.
+     */
+    @Nullable
+    public ResourceKey<Level> getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return The game mode the entry is limited to, or null if it applies in every game mode.
+     */
+    @Nullable
+    public GameType getGameType() {
+        return gameType;
+    }
+
+    public boolean isScoped() {
+        return dimension != null || gameType != null;
+    }
+
+    /**
+     * @param level The dimension to test, null if unknown (only dimension-unscoped entries apply).
+     * @param mode The game mode to test, null if unknown (only mode-unscoped entries apply).
+     * @return true if the entry applies in the given scope.
+     */
+    public boolean appliesTo(@Nullable ResourceKey<Level> level, @Nullable GameType mode) {
+        if (dimension != null && dimension != level) {
+            return false;
+        }
+        return gameType == null || gameType == mode;
+    }
+}
@@ -0,0 +1,157 @@
+package com.thunderscore.autooffhand.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.GameType;
+import net.minecraft.world.level.Level;
+
+/**
+ * Allow and deny lists whose entries may carry dimension/game mode scopes (see {@link RuleScope}),
+ * precompiled into one merged {@link CompiledRuleIndex} per scope.
+ * Selecting a scope is an identity lookup on the dimension key plus an array index on the game mode; dimensions
+ * no entry names share one row. Players cache their selection and only re-select when their scope changes
+ * (see ForgeEventHandler), so the pickup path never looks at scopes at all.
+ * <p>
+ * Immutable; a new set is built whenever a source list changes.
+ */
+public final class ScopedRuleSet {
+
+    public static final ScopedRuleSet EMPTY = new ScopedRuleSet(Collections.emptyList(), Collections.emptyList());
+
+    // Slot for "game mode unknown" after the GameType ordinals
+    private static final int UNKNOWN_MODE = GameType.values().length;
+
+    // All allow entries regardless of scope, for the prefilter's superset
+    private final CompiledRuleIndex union;
+    // Per-scope indexes for the dimensions named by some entry, indexed by game mode slot
+    private final Map<ResourceKey<Level>, CompiledRuleIndex[]> byDimension = new IdentityHashMap<>();
+    // Per-scope indexes for every other (or an unknown) dimension
+    private final CompiledRuleIndex[] otherDimension;
+    // Tag generation the set was built under
+    private final int builtGeneration;
+
+    private ScopedRuleSet(List<RuleScope> allow, List<RuleScope> deny) {
+        List<String> allRules = new ArrayList<>(allow.size());
+        Set<ResourceKey<Level>> dimensions = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean scoped = false;
+        for (RuleScope entry : allow) {
+            allRules.add(entry.getRule());
+            scoped |= collectScope(entry, dimensions);
+        }
+        for (RuleScope entry : deny) {
+            scoped |= collectScope(entry, dimensions);
+        }
+        this.union = CompiledRuleIndex.compile(allRules);
+
+        if (!scoped && deny.isEmpty()) {
+            // Nothing to filter: every scope selects the union itself
+            this.otherDimension = fill(union);
+        } else if (!scoped) {
+            this.otherDimension = fill(CompiledRuleIndex.compile(allRules, rules(deny)));
+        } else {
+            // Identical filtered lists are interned by CompiledRuleIndex, so unrelated scopes share one index
+            this.otherDimension = compileRow(allow, deny, null);
+            for (ResourceKey<Level> dimension : dimensions) {
+                byDimension.put(dimension, compileRow(allow, deny, dimension));
+            }
+        }
+        this.builtGeneration = CompiledRuleIndex.generation();
+    }
+
+    /**
+     * Parses the scope prefixes of both lists and compiles every scope.
+     * Entries with malformed scopes are dropped (ConfigItemUtils.parseConfigEntry logs them when they are validated).
+     *
+     * @param allowEntries Entries that move a stack to the offhand, in layer order.
+     * @param denyEntries Entries that veto a match; may be empty.
+     */
+    public static ScopedRuleSet build(List<? extends String> allowEntries, List<? extends String> denyEntries) {
+        if (allowEntries.isEmpty()) {
+            return EMPTY;
+        }
+        return new ScopedRuleSet(parseAll(allowEntries), parseAll(denyEntries));
+    }
+
+    private static List<RuleScope> parseAll(List<? extends String> entries) {
+        List<RuleScope> parsed = new ArrayList<>(entries.size());
+        for (String entry : entries) {
+            RuleScope scope = entry == null ? null : RuleScope.parse(entry);
+            if (scope != null) {
+                parsed.add(scope);
+            }
+        }
+        return parsed;
+    }
+
+    private static boolean collectScope(RuleScope entry, Set<ResourceKey<Level>> dimensions) {
+        if (entry.getDimension() != null) {
+            dimensions.add(entry.getDimension());
+        }
+        return entry.isScoped();
+    }
+
+    private static CompiledRuleIndex[] fill(CompiledRuleIndex index) {
+        CompiledRuleIndex[] row = new CompiledRuleIndex[UNKNOWN_MODE + 1];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = index;
+        }
+        return row;
+    }
+
+    private static CompiledRuleIndex[] compileRow(List<RuleScope> allow, List<RuleScope> deny, @Nullable ResourceKey<Level> dimension) {
+        CompiledRuleIndex[] row = new CompiledRuleIndex[UNKNOWN_MODE + 1];
+        for (int i = 0; i < row.length; i++) {
+            GameType gameType = i == UNKNOWN_MODE ? null : GameType.byId(i);
+            row[i] = CompiledRuleIndex.compile(filter(allow, dimension, gameType), filter(deny, dimension, gameType));
+        }
+        return row;
+    }
+
+    private static List<String> filter(List<RuleScope> entries, @Nullable ResourceKey<Level> dimension, @Nullable GameType gameType) {
+        List<String> rules = new ArrayList<>(entries.size());
+        for (RuleScope entry : entries) {
+            if (entry.appliesTo(dimension, gameType)) {
+                rules.add(entry.getRule());
+            }
+        }
+        return rules;
+    }
+
+    private static List<String> rules(List<RuleScope> entries) {
+        return filter(entries, null, null);
+    }
+
+    /**
+     * Selects the precompiled index for a scope.
+     *
+     * @param dimension The player's dimension, or null if unknown.
+     * @param gameType The player's game mode, or null if unknown.
+     * @return The index holding exactly the entries that apply in the scope.
+     */
+    public CompiledRuleIndex select(@Nullable ResourceKey<Level> dimension, @Nullable GameType gameType) {
+        CompiledRuleIndex[] row = dimension == null ? otherDimension : byDimension.getOrDefault(dimension, otherDimension);
+        return row[gameType == null ? UNKNOWN_MODE : gameType.getId()];
+    }
+
+    /**
+     * @return An index of every allow entry with scopes ignored; a superset used by the prefilter.
+     */
+    public CompiledRuleIndex union() {
+        return union;
+    }
+
+    /**
+     * @return true if item tags were reloaded since the set was built.
+     */
+    public boolean isStale() {
+        return this != EMPTY && builtGeneration != CompiledRuleIndex.generation();
+    }
+}
@@ -0,0 +1,72 @@
+package com.thunderscore.autooffhand.gametest;
+
+import java.util.List;
+
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.thunderscore.autooffhand.AutoOffhand;
+import com.thunderscore.autooffhand.config.CompiledRuleIndex;
+
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.nbt.TagParser;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraftforge.gametest.GameTestHolder;
+import net.minecraftforge.gametest.PrefixGameTestTemplate;
+
+/**
+ * Checks that partial NBT ("p:") entries follow vanilla's partial NbtUtils.compareNbt, on the edge cases where
+ * a plain subset check would differ: empty template lists and int/byte/long arrays.
+ * Runs headless through the gameTestServer run configuration (./gradlew runGameTestServer).
+ */
+@GameTestHolder(AutoOffhand.MOD_ID)
+@PrefixGameTestTemplate(false)
+public class PartialNbtGameTests {
+
+    @GameTest(template = "empty")
+    public static void partialListsMatchAsSubsets(GameTestHelper helper) {
+        String entry = "p:*{Enchantments:[{id:\"minecraft:mending\"}]}";
+        expect(helper, entry, "{Enchantments:[{id:\"minecraft:unbreaking\",lvl:3s},{id:\"minecraft:mending\",lvl:1s}]}", true);
+        expect(helper, entry, "{Enchantments:[{id:\"minecraft:unbreaking\",lvl:3s}]}", false);
+        expect(helper, entry, "{Enchantments:[]}", false);
+        helper.succeed();
+    }
+
+    @GameTest(template = "empty")
+    public static void emptyTemplateListMatchesOnlyAnEmptyList(GameTestHelper helper) {
+        String entry = "p:*{Items:[]}";
+        expect(helper, entry, "{Items:[]}", true);
+        expect(helper, entry, "{Items:[{Slot:0b,id:\"minecraft:stone\",Count:1b}]}", false);
+        expect(helper, entry, "{Other:1b}", false);
+        helper.succeed();
+    }
+
+    @GameTest(template = "empty")
+    public static void arraysMustBeEqual(GameTestHelper helper) {
+        String entry = "p:*{Ids:[I;1,2]}";
+        expect(helper, entry, "{Ids:[I;1,2]}", true);
+        expect(helper, entry, "{Ids:[I;1,2,3]}", false);
+        expect(helper, entry, "{Ids:[I;2,1]}", false);
+        expect(helper, entry, "{Ids:[1,2]}", false); // A list is not an int array
+        expect(helper, "p:*{Ids:[1,2]}", "{Ids:[I;1,2]}", false);
+        expect(helper, "p:*{Bytes:[B;]}", "{Bytes:[B;]}", true);
+        expect(helper, "p:*{Bytes:[B;]}", "{Bytes:[B;1b]}", false);
+        helper.succeed();
+    }
+
+    private static void expect(GameTestHelper helper, String entry, String stackTag, boolean expected) {
+        ItemStack stack = new ItemStack(Items.STICK);
+        try {
+            stack.setTag(TagParser.parseTag(stackTag));
+        } catch (CommandSyntaxException e) {
+            helper.fail("Invalid stack tag in test: " + stackTag);
+        }
+        CompiledRuleIndex rules = CompiledRuleIndex.compile(List.of(entry));
+        if (rules.isEmpty()) {
+            helper.fail("Entry did not compile: " + entry);
+        }
+        if (rules.matches(stack) != expected) {
+            helper.fail(entry + (expected ? " should match " : " should not match ") + stackTag);
+        }
+    }
+}
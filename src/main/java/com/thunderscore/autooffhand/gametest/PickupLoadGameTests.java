@@ -0,0 +1,264 @@
+package com.thunderscore.autooffhand.gametest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import com.mojang.authlib.GameProfile;
+import com.thunderscore.autooffhand.AutoOffhand;
+import com.thunderscore.autooffhand.ForgeEventHandler;
+import com.thunderscore.autooffhand.capability.PlayerConfigCapability;
+import com.thunderscore.autooffhand.config.CompiledRuleIndex;
+import com.thunderscore.autooffhand.config.ConfigItemUtils;
+import com.thunderscore.autooffhand.config.ModConfig;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.gametest.framework.GameTest;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.InteractionHand;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.entity.projectile.ThrownTrident;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.enchantment.Enchantments;
+import net.minecraftforge.common.util.FakePlayer;
+import net.minecraftforge.common.util.FakePlayerFactory;
+import net.minecraftforge.event.entity.player.EntityItemPickupEvent;
+import net.minecraftforge.gametest.GameTestHolder;
+import net.minecraftforge.gametest.PrefixGameTestTemplate;
+import net.minecraftforge.registries.ForgeRegistries;
+
+/**
+ * Server-side load test for the pickup path: dozens of fake players with varied configs are flooded with
+ * item pickups and loyalty trident returns while tick time and handler time are recorded.
+ * Runs headless through the gameTestServer run configuration (./gradlew runGameTestServer).
+ * The random seed is fixed so runs are comparable; results are logged as one key=value line.
+ */
+@GameTestHolder(AutoOffhand.MOD_ID)
+@PrefixGameTestTemplate(false)
+public class PickupLoadGameTests {
+
+    private static final int PLAYER_COUNT = 48;
+    private static final int STORM_TICKS = 40;
+    private static final int PICKUPS_PER_TICK = 250; // 10,000 pickups in total
+    private static final int TRIDENT_RETURNS_PER_TICK = 8;
+    private static final long SEED = 0x4155544FL;
+
+    @GameTest(template = "empty", timeoutTicks = STORM_TICKS + 100)
+    public static void pickupItemStorm(GameTestHelper helper) {
+        ServerLevel level = helper.getLevel();
+        MinecraftServer server = level.getServer();
+        BlockPos origin = helper.absolutePos(new BlockPos(4, 1, 4));
+
+        List<FakePlayer> players = spawnPlayers(level, origin);
+        List<ItemStack> pool = itemPool();
+        LoadStats stats = new LoadStats();
+        Random random = new Random(SEED);
+        int firstTick = server.getTickCount() + 1;
+
+        for (int tick = 1; tick <= STORM_TICKS; tick++) {
+            helper.runAtTickTime(tick, () -> {
+                runPickupBurst(level, origin, players, pool, random, stats);
+                runTridentReturns(level, players, random, stats);
+            });
+        }
+
+        helper.runAtTickTime(STORM_TICKS + 2, () -> {
+            int lastTick = server.getTickCount() - 1;
+            stats.recordTicks(server.tickTimes, firstTick, lastTick);
+            AutoOffhand.LOGGER.info("AutoOffhand load test: {}", stats.summary());
+            for (FakePlayer player : players) {
+                player.getInventory().clearContent();
+            }
+            if (stats.expectedMoves == 0) {
+                helper.fail("No matching pickup found a free target slot during the item storm");
+            }
+            if (stats.misplaced > 0) {
+                helper.fail(stats.misplaced + " matching pickups did not land in their free target slot");
+            }
+            if (stats.wronglyTaken > 0) {
+                helper.fail(stats.wronglyTaken + " non-matching pickups were taken by the handler");
+            }
+        });
+        helper.runAtTickTime(STORM_TICKS + 3, helper::succeed);
+    }
+
+    // Four config profiles: server list, small plain list, plain + NBT entry, and a large plain list
+    private static List<FakePlayer> spawnPlayers(ServerLevel level, BlockPos origin) {
+        List<ResourceLocation> itemKeys = new ArrayList<>(ForgeRegistries.ITEMS.getKeys());
+        itemKeys.sort(null);
+        String enchantedSwordEntry = ConfigItemUtils.serializeItemStack(enchantedSword(5));
+
+        List<FakePlayer> players = new ArrayList<>(PLAYER_COUNT);
+        for (int i = 0; i < PLAYER_COUNT; i++) {
+            GameProfile profile = new GameProfile(UUID.nameUUIDFromBytes(("autooffhand_load_" + i).getBytes()), "aoh_load_" + i);
+            FakePlayer player = FakePlayerFactory.get(level, profile);
+            player.setPos(origin.getX() + 0.5, origin.getY(), origin.getZ() + 0.5);
+            player.getInventory().clearContent();
+
+            List<String> entries = new ArrayList<>();
+            switch (i % 4) {
+                case 1:
+                    entries.addAll(Arrays.asList("minecraft:totem_of_undying", "minecraft:shield", "minecraft:torch"));
+                    break;
+                case 2:
+                    entries.addAll(Arrays.asList("minecraft:totem_of_undying", "minecraft:torch"));
+                    entries.add(enchantedSwordEntry);
+                    break;
+                case 3:
+                    for (int k = 0; k < 200; k++) {
+                        entries.add(itemKeys.get((i * 37 + k * 5) % itemKeys.size()).toString());
+                    }
+                    break;
+                default:
+                    break;
+            }
+            boolean useServerConfig = i % 4 == 0;
+            player.getCapability(PlayerConfigCapability.PLAYER_CONFIG_CAPABILITY).ifPresent(cap -> {
+                cap.setConfigList(entries);
+                cap.setUseServerConfig(useServerConfig);
+            });
+            players.add(player);
+        }
+        return players;
+    }
+
+    // Mostly mob-farm drops that match nothing, plus a few configured items
+    private static List<ItemStack> itemPool() {
+        return Arrays.asList(
+                new ItemStack(Items.COBBLESTONE), new ItemStack(Items.ROTTEN_FLESH), new ItemStack(Items.BONE),
+                new ItemStack(Items.ARROW), new ItemStack(Items.STRING), new ItemStack(Items.GUNPOWDER),
+                new ItemStack(Items.SPIDER_EYE), new ItemStack(Items.IRON_INGOT),
+                new ItemStack(Items.TOTEM_OF_UNDYING), new ItemStack(Items.SHIELD), new ItemStack(Items.TORCH),
+                enchantedSword(5), enchantedSword(3)
+        );
+    }
+
+    private static ItemStack enchantedSword(int sharpness) {
+        ItemStack sword = new ItemStack(Items.DIAMOND_SWORD);
+        sword.enchant(Enchantments.SHARPNESS, sharpness);
+        return sword;
+    }
+
+    private static void runPickupBurst(ServerLevel level, BlockPos origin, List<FakePlayer> players, List<ItemStack> pool, Random random, LoadStats stats) {
+        for (int n = 0; n < PICKUPS_PER_TICK; n++) {
+            FakePlayer player = players.get(random.nextInt(players.size()));
+            // Free the offhand half of the time so both the empty and occupied paths are exercised
+            if (random.nextBoolean()) {
+                player.setItemInHand(InteractionHand.OFF_HAND, ItemStack.EMPTY);
+            }
+            ItemStack stack = pool.get(random.nextInt(pool.size())).copy();
+            ItemStack original = stack.copy();
+            ItemEntity itemEntity = new ItemEntity(level, origin.getX() + 0.5, origin.getY(), origin.getZ() + 0.5, stack);
+            EntityItemPickupEvent event = new EntityItemPickupEvent(player, itemEntity);
+
+            // Expected outcome, from the player's active rules
+            CompiledRuleIndex rules = player.getCapability(PlayerConfigCapability.PLAYER_CONFIG_CAPABILITY)
+                    .map(cap -> cap.getActiveRules()).orElse(CompiledRuleIndex.EMPTY);
+            int rank = rules.rank(original);
+            int target = rules.targetSlot(rank);
+            boolean matches = rank != CompiledRuleIndex.NO_MATCH;
+            boolean targetFree = matches && stackInSlot(player, target).isEmpty();
+
+            long start = System.nanoTime();
+            ForgeEventHandler.onPlayerPickupItem(event);
+            stats.recordPickup(System.nanoTime() - start, event.isCanceled());
+
+            if (!matches) {
+                // Left for vanilla to pick up: not cancelled and the stack untouched
+                if (event.isCanceled() || !ItemStack.matches(itemEntity.getItem(), original)) {
+                    stats.wronglyTaken++;
+                }
+            } else if (targetFree && !ModConfig.SERVER.batchPickupsPerTick.get()) {
+                // Batched pickups are only placed at the end of the tick, so only the immediate mode is checked here
+                stats.expectedMoves++;
+                if (!event.isCanceled() || !ItemStack.matches(stackInSlot(player, target), original)) {
+                    stats.misplaced++;
+                }
+            }
+        }
+    }
+
+    private static ItemStack stackInSlot(FakePlayer player, int target) {
+        return target == CompiledRuleIndex.OFFHAND ? player.getItemInHand(InteractionHand.OFF_HAND) : player.getInventory().getItem(target);
+    }
+
+    // Simulates a loyalty trident reaching its owner: the item lands in the inventory and the entity is discarded
+    private static void runTridentReturns(ServerLevel level, List<FakePlayer> players, Random random, LoadStats stats) {
+        for (int n = 0; n < TRIDENT_RETURNS_PER_TICK; n++) {
+            FakePlayer player = players.get(random.nextInt(players.size()));
+            ItemStack tridentStack = new ItemStack(Items.TRIDENT);
+            tridentStack.enchant(Enchantments.LOYALTY, 3);
+            ThrownTrident trident = new ThrownTrident(level, player, tridentStack);
+            level.addFreshEntity(trident);
+            player.getInventory().add(tridentStack.copy());
+
+            long start = System.nanoTime();
+            trident.discard(); // Fires EntityLeaveWorldEvent through the event bus
+            stats.recordReturn(System.nanoTime() - start);
+        }
+    }
+
+    private static final class LoadStats {
+        private int pickups;
+        private int moved;
+        // Matching pickups whose target slot was free, and those of them that didn't end up there
+        private int expectedMoves;
+        private int misplaced;
+        // Non-matching pickups that were cancelled or modified
+        private int wronglyTaken;
+        private long pickupNanos;
+        private long pickupMaxNanos;
+        private int returns;
+        private long returnNanos;
+        private long returnMaxNanos;
+        private double tickAvgMillis;
+        private double tickMaxMillis;
+
+        void recordPickup(long nanos, boolean wasMoved) {
+            pickups++;
+            if (wasMoved) {
+                moved++;
+            }
+            pickupNanos += nanos;
+            pickupMaxNanos = Math.max(pickupMaxNanos, nanos);
+        }
+
+        void recordReturn(long nanos) {
+            returns++;
+            returnNanos += nanos;
+            returnMaxNanos = Math.max(returnMaxNanos, nanos);
+        }
+
+        // MinecraftServer keeps the last 100 tick durations in a ring buffer indexed by tick count
+        void recordTicks(long[] tickTimes, int firstTick, int lastTick) {
+            long total = 0;
+            long max = 0;
+            int count = 0;
+            for (int tick = firstTick; tick <= lastTick && count < tickTimes.length; tick++) {
+                long nanos = tickTimes[tick % tickTimes.length];
+                total += nanos;
+                max = Math.max(max, nanos);
+                count++;
+            }
+            tickAvgMillis = count == 0 ? 0 : total / (double) count / 1_000_000.0;
+            tickMaxMillis = max / 1_000_000.0;
+        }
+
+        String summary() {
+            double pickupAvgNanos = pickups == 0 ? 0 : pickupNanos / (double) pickups;
+            double returnAvgNanos = returns == 0 ? 0 : returnNanos / (double) returns;
+            double pickupsPerSecond = pickupNanos == 0 ? 0 : pickups * 1_000_000_000.0 / pickupNanos;
+            return String.format(java.util.Locale.ROOT,
+                    "players=%d pickups=%d moved=%d expectedMoves=%d misplaced=%d wronglyTaken=%d handlerAvgNs=%.0f handlerMaxNs=%d handlerPickupsPerSec=%.0f "
+                            + "returns=%d returnAvgNs=%.0f returnMaxNs=%d tickAvgMs=%.3f tickMaxMs=%.3f",
+                    PLAYER_COUNT, pickups, moved, expectedMoves, misplaced, wronglyTaken, pickupAvgNanos, pickupMaxNanos, pickupsPerSecond,
+                    returns, returnAvgNanos, returnMaxNanos, tickAvgMillis, tickMaxMillis);
+        }
+    }
+}
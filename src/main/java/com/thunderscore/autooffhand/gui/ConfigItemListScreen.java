@@ -8,7 +8,9 @@ import org.apache.logging.log4j.Logger;
 
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.PoseStack;
+import com.thunderscore.autooffhand.config.CapabilityRule;
 import com.thunderscore.autooffhand.config.ConfigItemUtils;
+import com.thunderscore.autooffhand.config.RuleScope;
 import com.thunderscore.autooffhand.inventory.ConfigItemListContainer;
 import com.thunderscore.autooffhand.network.NetworkHandler;
 import com.thunderscore.autooffhand.network.UpdateConfigPacket;
@@ -17,14 +19,18 @@ import net.minecraft.ChatFormatting;
 import net.minecraft.client.gui.components.Button;
 import net.minecraft.client.gui.components.EditBox;
 import net.minecraft.client.gui.screens.inventory.AbstractContainerScreen;
+import net.minecraft.core.Holder;
+import net.minecraft.core.Registry;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.TextComponent;
 import net.minecraft.network.chat.TranslatableComponent;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
 import net.minecraft.world.Container;
 import net.minecraft.world.entity.player.Inventory;
 import net.minecraft.world.inventory.ClickType;
 import net.minecraft.world.inventory.Slot;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.Items;
 import net.minecraftforge.registries.ForgeRegistries;
@@ -149,15 +155,61 @@ public class ConfigItemListScreen extends AbstractContainerScreen<ConfigItemList
         String entryToAdd = null;
         boolean entryFound = false;
 
-        if (trimmedText.startsWith("n:")) {
-            entryToAdd = trimmedText.substring(2).trim(); // Get text after "n:"
-            if (entryToAdd.isEmpty()) {
+        if (trimmedText.startsWith(RuleScope.SCOPE_START) || trimmedText.startsWith(ConfigItemUtils.ROUTE_PREFIX)) {
+            // Scoped or routed entries are stored as typed; the rule behind the prefixes must parse
+            entryToAdd = trimmedText;
+            if (ConfigItemUtils.parseConfigEntry(entryToAdd) == null) {
+                LOGGER.warn("Invalid scoped or routed entry provided: {}", entryToAdd);
+                // Optionally provide feedback to player
+                return;
+            }
+            LOGGER.debug("Attempting to add scoped or routed entry: {}", entryToAdd);
+
+        } else if (trimmedText.startsWith(ConfigItemUtils.NAME_PREFIX)) {
+            String substring = trimmedText.substring(ConfigItemUtils.NAME_PREFIX.length()).trim(); // Get text after "n:"
+            if (substring.isEmpty()) {
                 LOGGER.debug("Cannot add empty name substring entry.");
                 return; // Don't add if only "n:" was entered
             }
+            // Keep the prefix so the entry is stored as a name rule, not a registry name
+            entryToAdd = ConfigItemUtils.NAME_PREFIX + substring;
             LOGGER.debug("Attempting to add name substring entry: {}", entryToAdd);
-            // Note: Name substring logic is handled by ConfigItemUtils.parseConfigEntry,
-            // we just need to add the raw string here. Validation happens on use.
+
+        } else if (trimmedText.startsWith(ConfigItemUtils.CAPABILITY_PREFIX)) {
+            entryToAdd = trimmedText;
+            if (CapabilityRule.parse(entryToAdd) == null) {
+                LOGGER.warn("Invalid capability entry provided: {}", entryToAdd);
+                // Optionally provide feedback to player
+                return;
+            }
+            LOGGER.debug("Attempting to add capability entry: {}", entryToAdd);
+
+        } else if (trimmedText.startsWith(ConfigItemUtils.PARTIAL_PREFIX)) {
+            entryToAdd = trimmedText;
+            if (ConfigItemUtils.parsePartialEntry(entryToAdd) == null) {
+                LOGGER.warn("Invalid partial NBT entry provided: {}", entryToAdd);
+                // Optionally provide feedback to player
+                return;
+            }
+            LOGGER.debug("Attempting to add partial NBT entry: {}", entryToAdd);
+
+        } else if (trimmedText.startsWith(ConfigItemUtils.TAG_PREFIX)) {
+            entryToAdd = trimmedText;
+            if (ConfigItemUtils.parseTagEntry(entryToAdd) == null) {
+                LOGGER.warn("Invalid item tag format provided: {}", entryToAdd);
+                // Optionally provide feedback to player
+                return;
+            }
+            LOGGER.debug("Attempting to add item tag entry: {}", entryToAdd);
+
+        } else if (trimmedText.endsWith(ConfigItemUtils.NAMESPACE_WILDCARD_SUFFIX)) {
+            entryToAdd = trimmedText;
+            if (ConfigItemUtils.parseNamespaceEntry(entryToAdd) == null) {
+                LOGGER.warn("Invalid namespace wildcard provided: {}", entryToAdd);
+                // Optionally provide feedback to player
+                return;
+            }
+            LOGGER.debug("Attempting to add namespace wildcard entry: {}", entryToAdd);
 
         } else if (trimmedText.startsWith("r:")) {
             entryToAdd = trimmedText.substring(2).trim(); // Get text after "r:"
@@ -289,6 +341,47 @@ public class ConfigItemListScreen extends AbstractContainerScreen<ConfigItemList
                         displayStack = new ItemStack(Items.BARRIER).setHoverName(new TextComponent("Invalid ID: " + entry).withStyle(ChatFormatting.RED));
                         LOGGER.warn("    Parsed as ResourceLocation but item not found: {}", rl); // Log warning
                     }
+                } else if (parsed instanceof TagKey) {
+                    // Display the first item currently in the tag (name tag if the tag is empty or unknown)
+                    @SuppressWarnings("unchecked")
+                    TagKey<Item> tagKey = (TagKey<Item>) parsed;
+                    ItemStack tagStack = new ItemStack(Items.NAME_TAG);
+                    for (Holder<Item> holder : Registry.ITEM.getTagOrEmpty(tagKey)) {
+                        tagStack = new ItemStack(holder.value());
+                        break;
+                    }
+                    displayStack = tagStack.setHoverName(new TranslatableComponent("gui.autooffhand.tag_tooltip", entry)
+                            .withStyle(ChatFormatting.AQUA));
+                    LOGGER.debug("    Parsed as item tag: {}, Displaying: {}", tagKey.location(), displayStack);
+                } else if (parsed instanceof CapabilityRule) {
+                    String capability = ((CapabilityRule) parsed).getName();
+                    displayStack = new ItemStack(Items.NAME_TAG).setHoverName(new TranslatableComponent("gui.autooffhand.capability_tooltip", capability)
+                            .withStyle(ChatFormatting.AQUA));
+                    LOGGER.debug("    Parsed as capability: {}", capability);
+                } else if (parsed instanceof ConfigItemUtils.PartialNbt) {
+                    ConfigItemUtils.PartialNbt partial = (ConfigItemUtils.PartialNbt) parsed;
+                    ItemStack partialStack = partial.getItem() != null ? new ItemStack(partial.getItem()) : new ItemStack(Items.NAME_TAG);
+                    displayStack = partialStack.setHoverName(new TranslatableComponent("gui.autooffhand.partial_tooltip", partial.getTemplate().getAsString())
+                            .withStyle(ChatFormatting.AQUA));
+                    LOGGER.debug("    Parsed as partial NBT: {}", entry);
+                } else if (parsed instanceof ConfigItemUtils.NameSubstring) {
+                    String substring = ((ConfigItemUtils.NameSubstring) parsed).getSubstring();
+                    displayStack = new ItemStack(Items.NAME_TAG).setHoverName(new TranslatableComponent("gui.autooffhand.name_tooltip", substring)
+                            .withStyle(ChatFormatting.AQUA));
+                    LOGGER.debug("    Parsed as name substring: {}", substring);
+                } else if (parsed instanceof String) {
+                    // Namespace wildcard: display the first item registered under the namespace
+                    String namespace = (String) parsed;
+                    ItemStack namespaceStack = new ItemStack(Items.NAME_TAG);
+                    for (Item item : ForgeRegistries.ITEMS.getValues()) {
+                        if (namespace.equals(item.getRegistryName().getNamespace())) {
+                            namespaceStack = new ItemStack(item);
+                            break;
+                        }
+                    }
+                    displayStack = namespaceStack.setHoverName(new TranslatableComponent("gui.autooffhand.namespace_tooltip", namespace)
+                            .withStyle(ChatFormatting.AQUA));
+                    LOGGER.debug("    Parsed as namespace wildcard: {}, Displaying: {}", namespace, displayStack);
                 } else {
                     // Invalid entry, display barrier
                     displayStack = new ItemStack(Items.BARRIER).setHoverName(new TextComponent("Invalid Entry: " + entry).withStyle(ChatFormatting.RED));
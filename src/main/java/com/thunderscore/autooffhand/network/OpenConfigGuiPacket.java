@@ -8,6 +8,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.thunderscore.autooffhand.ClientSetup;
+import com.thunderscore.autooffhand.Trace;
 
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraftforge.network.NetworkEvent;
@@ -57,10 +58,12 @@ public class OpenConfigGuiPacket {
 
     public static void handle(OpenConfigGuiPacket msg, Supplier<NetworkEvent.Context> ctx) {
         ctx.get().enqueueWork(() -> {
-            LOGGER.info("Received OpenConfigGuiPacket on client (isServerConfig={}) with {} entries: {}",
+            LOGGER.debug("Received OpenConfigGuiPacket on client (isServerConfig={}) with {} entries.",
                         msg.isServerConfig,
-                        msg.configEntries != null ? msg.configEntries.size() : "null",
-                        msg.configEntries);
+                        msg.configEntries != null ? msg.configEntries.size() : "null");
+            if (Trace.enabled(Trace.Category.NETWORK)) {
+                Trace.log(Trace.Category.NETWORK, "OpenConfigGuiPacket entries: {}", msg.configEntries);
+            }
             ClientSetup.openConfigScreen(msg.configEntries, msg.isServerConfig);
         });
         ctx.get().setPacketHandled(true);
@@ -1,6 +1,7 @@
 package com.thunderscore.autooffhand.network;
 
 import com.thunderscore.autooffhand.AutoOffhand;
+import com.thunderscore.autooffhand.Trace;
 import com.thunderscore.autooffhand.gui.ConfigItemListScreen;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.screens.Screen;
@@ -29,7 +30,9 @@ public class SyncConfigPacket {
 
     // Encoder: Write data to the buffer (Server -> Client)
     public static void encode(SyncConfigPacket msg, FriendlyByteBuf buf) {
-        AutoOffhand.LOGGER.info("Encoding SyncConfigPacket (isServerConfig={}) with {} entries.", msg.isServerConfig, msg.configEntries.size());
+        if (Trace.enabled(Trace.Category.NETWORK)) {
+            Trace.log(Trace.Category.NETWORK, "Encoding SyncConfigPacket (isServerConfig={}) with {} entries.", msg.isServerConfig, msg.configEntries.size());
+        }
         buf.writeBoolean(msg.isServerConfig); // Write flag first
         buf.writeVarInt(msg.configEntries.size());
         for (String entry : msg.configEntries) {
@@ -41,7 +44,9 @@ public class SyncConfigPacket {
     public static SyncConfigPacket decode(FriendlyByteBuf buf) {
         boolean isServer = buf.readBoolean(); // Read flag first
         int size = buf.readVarInt();
-        AutoOffhand.LOGGER.info("Decoding SyncConfigPacket (isServerConfig={}) with {} entries.", isServer, size);
+        if (Trace.enabled(Trace.Category.NETWORK)) {
+            Trace.log(Trace.Category.NETWORK, "Decoding SyncConfigPacket (isServerConfig={}) with {} entries.", isServer, size);
+        }
         List<String> entries = new ArrayList<>(size);
         for (int i = 0; i < size; i++) {
             entries.add(buf.readUtf());
@@ -55,7 +60,9 @@ public class SyncConfigPacket {
             // IMPORTANT: Execute on the Client thread
             // Use DistExecutor to ensure this runs only on the client side safely
             DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> {
-                AutoOffhand.LOGGER.info("Received SyncConfigPacket on client (isServerConfig={}) with {} entries.", msg.isServerConfig, msg.configEntries.size());
+                if (Trace.enabled(Trace.Category.NETWORK)) {
+                    Trace.log(Trace.Category.NETWORK, "Received SyncConfigPacket on client (isServerConfig={}) with {} entries.", msg.isServerConfig, msg.configEntries.size());
+                }
                 try {
                     // Update the GUI only if it's open AND it matches the type of config being synced.
                     Screen currentScreen = Minecraft.getInstance().screen;
@@ -67,14 +74,14 @@ public class SyncConfigPacket {
                         // if (configScreen.isEditingServerConfig() == msg.isServerConfig) { // TODO: Add getter to ConfigItemListScreen
                         // For now, let's just refresh regardless
                         // TODO: Check if configScreen.isServerConfig matches msg.isServerConfig before refreshing
-                        AutoOffhand.LOGGER.info("Config screen is open, refreshing entries from synced config (isServerConfig={}).", msg.isServerConfig);
+                        AutoOffhand.LOGGER.debug("Config screen is open, refreshing entries from synced config (isServerConfig={}).", msg.isServerConfig);
                         configScreen.refreshEntriesFromList(msg.configEntries);
                         // } else {
                         //    AutoOffhand.LOGGER.info("Config screen is open but for the wrong config type (screen={}, packet={}). Ignoring sync.", configScreen.isEditingServerConfig(), msg.isServerConfig);
                         // }
                     } else {
                         // If the screen isn't open, we don't need to do anything.
-                        AutoOffhand.LOGGER.info("Config screen not open, no GUI update needed from SyncConfigPacket.");
+                        AutoOffhand.LOGGER.debug("Config screen not open, no GUI update needed from SyncConfigPacket.");
                     }
 
                 } catch (Exception e) {
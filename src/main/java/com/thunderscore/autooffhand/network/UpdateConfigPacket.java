@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.function.Supplier;
 
 import com.thunderscore.autooffhand.AutoOffhand;
+import com.thunderscore.autooffhand.Trace;
 import com.thunderscore.autooffhand.capability.PlayerConfigCapability;
 import com.thunderscore.autooffhand.config.ModConfig;
 
@@ -27,7 +28,9 @@ public class UpdateConfigPacket {
 
     // Encoder: Write data to the buffer
     public static void encode(UpdateConfigPacket msg, FriendlyByteBuf buf) {
-        AutoOffhand.LOGGER.info("Encoding UpdateConfigPacket (isServerConfig={}) with {} entries.", msg.isServerConfig, msg.configEntries.size());
+        if (Trace.enabled(Trace.Category.NETWORK)) {
+            Trace.log(Trace.Category.NETWORK, "Encoding UpdateConfigPacket (isServerConfig={}) with {} entries.", msg.isServerConfig, msg.configEntries.size());
+        }
         buf.writeBoolean(msg.isServerConfig);
         buf.writeVarInt(msg.configEntries.size());
         for (String entry : msg.configEntries) {
@@ -39,7 +42,9 @@ public class UpdateConfigPacket {
     public static UpdateConfigPacket decode(FriendlyByteBuf buf) {
         boolean isServer = buf.readBoolean();
         int size = buf.readVarInt();
-        AutoOffhand.LOGGER.info("Decoding UpdateConfigPacket (isServerConfig={}) with {} entries.", isServer, size);
+        if (Trace.enabled(Trace.Category.NETWORK)) {
+            Trace.log(Trace.Category.NETWORK, "Decoding UpdateConfigPacket (isServerConfig={}) with {} entries.", isServer, size);
+        }
         List<String> entries = new ArrayList<>(size);
         for (int i = 0; i < size; i++) {
             entries.add(buf.readUtf());
@@ -66,6 +71,7 @@ public class UpdateConfigPacket {
                         AutoOffhand.LOGGER.info("Applying update to server config...");
                         // Set the new list in the config object
                         ModConfig.SERVER.globalAutoOffhandItems.set(msg.configEntries);
+                        ModConfig.SERVER.rebuildGlobalRules(); // Swap in the new compiled snapshot right away
                         // ModConfig.SERVER_SPEC.save(); // Explicit save is generally not needed here
                         AutoOffhand.LOGGER.info("Updated server config value in memory. List size: {}", msg.configEntries.size());
                         sender.displayClientMessage(new TranslatableComponent("commands.autooffhand.success.server_updated"), false); // TODO: Show message on GUI close